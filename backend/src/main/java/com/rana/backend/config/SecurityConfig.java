@@ -1,5 +1,6 @@
 package com.rana.backend.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -19,28 +20,48 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import com.rana.backend.security.JwtAuthEntryPoint;
 import com.rana.backend.security.JwtAuthFilter;
 import com.rana.backend.security.JwtUtils;
+import com.rana.backend.security.RateLimitFilter;
+import com.rana.backend.security.RateLimiter;
+
+import jakarta.servlet.DispatcherType;
 
 import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Configuration
 @EnableMethodSecurity
 public class SecurityConfig {
 
+    // $2a$10$... -> 10
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+
     private final JwtAuthEntryPoint jwtAuthEntryPoint;
     private final JwtUtils jwtUtils;
     private final UserDetailsService userDetailsService;
+    private final RateLimiter rateLimiter;
 
     // dependencies injection when creating SecurityConfig object
-    public SecurityConfig(JwtAuthEntryPoint jwtAuthEntryPoint,JwtUtils jwtUtils,UserDetailsService userDetailsService) {
+    public SecurityConfig(JwtAuthEntryPoint jwtAuthEntryPoint,JwtUtils jwtUtils,UserDetailsService userDetailsService,
+            RateLimiter rateLimiter) {
         this.jwtAuthEntryPoint = jwtAuthEntryPoint;
         this.jwtUtils = jwtUtils;
         this.userDetailsService = userDetailsService;
+        this.rateLimiter = rateLimiter;
     }
 
-    // defines a password encoder bean that Spring can use anywhere using BCrypt hashing
+    // defines a password encoder bean that Spring can use anywhere using BCrypt hashing.
+    // a stored hash with a different cost than auth.bcrypt.strength (higher or lower) is
+    // re-encoded on the next successful login through UserDetailsPasswordService
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${auth.bcrypt.strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength) {
+            @Override
+            public boolean upgradeEncoding(String encodedPassword) {
+                Matcher matcher = BCRYPT_COST.matcher(encodedPassword == null ? "" : encodedPassword);
+                return !matcher.find() || Integer.parseInt(matcher.group(1)) != strength;
+            }
+        };
     }
 
     // bean for the authentication manager which handles
@@ -55,6 +76,11 @@ public class SecurityConfig {
     public JwtAuthFilter jwtAuthFilter() {
         return new JwtAuthFilter(jwtUtils, userDetailsService);
     }
+
+    @Bean
+    public RateLimitFilter rateLimitFilter() {
+        return new RateLimitFilter(rateLimiter);
+    }
    
     // core security configuration method that defines all security rules   
     @Bean
@@ -76,9 +102,17 @@ public class SecurityConfig {
 
                 // sets which URLs are public and which require login
                 .authorizeHttpRequests(auth -> auth
+                        // async dispatches (SSE, DeferredResult) and error pages continue a request
+                        // that was already authorized; the JWT context is not carried over to them
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                         .requestMatchers("/api/auth/**").permitAll() // allow public access to login/register endpoints
+                        // metrics carry per-user data, only health is public
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .anyRequest().authenticated()) // all other requests require valid JWT token
-                .addFilterBefore(jwtAuthFilter(), UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthFilter(), UsernamePasswordAuthenticationFilter.class)
+                // per-user token buckets, keyed by the JWT subject set by jwtAuthFilter
+                .addFilterAfter(rateLimitFilter(), JwtAuthFilter.class);
 
         return http.build();
     }
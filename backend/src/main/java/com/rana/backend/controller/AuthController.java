@@ -2,6 +2,8 @@ package com.rana.backend.controller;
 
 import lombok.RequiredArgsConstructor;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,6 +12,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.security.core.AuthenticationException;
 import com.rana.backend.security.JwtUtils;
 import com.rana.backend.dto.request.LoginRequest;
 import com.rana.backend.dto.request.RegisterRequest;
@@ -19,26 +22,64 @@ import com.rana.backend.service.AuthService;
 
 import javax.validation.Valid;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
 public class AuthController {
     private final AuthService authService;
-    private final JwtUtils jwtUtils; 
+    private final JwtUtils jwtUtils;
+
+    @Value("${auth.hashing.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody RegisterRequest registerRequest) {
+    public CompletableFuture<ResponseEntity<?>> registerUser(@Valid @RequestBody RegisterRequest registerRequest) {
         try {
-            AuthResponse response = authService.register(registerRequest);
-            return ResponseEntity.ok(response);
-        } catch (IllegalArgumentException e) {
-            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+            return authService.register(registerRequest)
+                    .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                    .exceptionally(error -> {
+                        if (unwrap(error) instanceof IllegalArgumentException e) {
+                            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+                        }
+                        throw new CompletionException(unwrap(error));
+                    });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(busy());
         }
     }
 
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
-        return ResponseEntity.ok(authService.login(loginRequest));
+    public CompletableFuture<ResponseEntity<?>> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+        try {
+            return authService.login(loginRequest)
+                    .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                    .exceptionally(error -> {
+                        if (unwrap(error) instanceof AuthenticationException e) {
+                            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                                    .body(new MessageResponse("unauthorized " + e.getMessage()));
+                        }
+                        throw new CompletionException(unwrap(error));
+                    });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(busy());
+        }
     }
+
+    // the password hashing queue is full
+    private ResponseEntity<?> busy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(new MessageResponse("Too many authentication requests, please try again later"));
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
     @GetMapping("/verify")
     public ResponseEntity<AuthResponse> verifyToken(@RequestHeader("Authorization") String authHeader) {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
@@ -2,17 +2,35 @@ package com.rana.backend.controller;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rana.backend.service.AnalysisPriority;
+import com.rana.backend.service.AnalysisScheduler;
+import com.rana.backend.service.AnimationAnalysisService;
+import com.rana.backend.service.FrameDecoder;
+import com.rana.backend.service.MediaTooLargeException;
+import com.rana.backend.service.PerceptualHash;
+import com.rana.backend.service.ProgressiveAnalysisService;
 import com.rana.backend.service.PythonService;
+import com.rana.backend.service.ResultReuseService;
+import com.rana.backend.service.TiledDetectionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.security.Principal;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/pets")
@@ -23,75 +41,358 @@ public class PetAnalysisController {
     @Autowired
     private PythonService pythonService;
 
+    @Autowired
+    private AnalysisScheduler analysisScheduler;
+
+    @Autowired
+    private AnimationAnalysisService animationAnalysisService;
+
+    @Autowired
+    private ResultReuseService resultReuseService;
+
+    @Autowired
+    private ProgressiveAnalysisService progressiveAnalysisService;
+
+    @Autowired
+    private TiledDetectionService tiledDetectionService;
+
+    @Value("${analysis.stream.timeout-ms:300000}")
+    private long streamTimeoutMs;
+
+    @Value("${analysis.request-timeout-ms:300000}")
+    private long requestTimeoutMs;
+
     @PostMapping(value = "/analyze", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<Map<String, Object>> analyzeImage(
+    public DeferredResult<ResponseEntity<Map<String, Object>>> analyzeImage(
             @RequestHeader(value = "Authorization", required = false) String authHeader,
-            @RequestParam("image") MultipartFile image) {
+            @RequestParam("image") MultipartFile image,
+            @RequestParam(value = "priority", required = false) String priority,
+            Principal principal) {
 
         try {
             // 1. Basic validation
             if (image.isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body(Map.of("error", "No image provided"));
+                return completed(ResponseEntity.badRequest()
+                        .body(Map.of("error", "No image provided")));
             }
 
             // 2. Verify image type
             String contentType = image.getContentType();
             if (contentType == null || !contentType.startsWith("image/")) {
-                return ResponseEntity.badRequest()
-                        .body(Map.of("error", "Only image files are allowed"));
+                return completed(ResponseEntity.badRequest()
+                        .body(Map.of("error", "Only image files are allowed")));
+            }
+
+            AnalysisPriority analysisPriority;
+            try {
+                analysisPriority = AnalysisPriority.from(priority);
+            } catch (IllegalArgumentException e) {
+                return completed(ResponseEntity.badRequest()
+                        .body(Map.of("error", e.getMessage())));
             }
 
-            // 3. Process image
-            String resultJson = pythonService.analyzeImage(image);
-            JsonNode result = new ObjectMapper().readTree(resultJson);
-
-            // 4. Handle Python script errors
-            if (!result.path("success").asBoolean()) {
-                logger.error("Python processing error: {}", result);
-                return ResponseEntity.internalServerError()
-                        .body(Map.of(
-                                "error", result.path("error").asText("Processing failed"),
-                                "traceback", result.path("traceback").asText("")));
+            // 3. Reuse the result of a near-duplicate upload if there is one
+            String user = principal.getName();
+            PerceptualHash.Fingerprint fingerprint = resultReuseService.fingerprint(image);
+            String reusable = resultReuseService.findReusable(user, fingerprint);
+            if (reusable != null) {
+                return completed(buildResponse(reusable, true, user, fingerprint));
             }
 
-            // 5. Build complete response with all fields
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("classification", result.path("classification").asText("unknown"));
-
-            // Handle detections - ensure it's always an array
-            JsonNode detections = result.path("detections");
-            response.put("detections", detections.isMissingNode() ? new Object[0] : detections);
-
-            // Handle visualizations
-            JsonNode visualizations = result.path("visualizations");
-            Map<String, String> vizMap = new HashMap<>();
-            vizMap.put("detection", visualizations.path("detection").asText(""));
-            vizMap.put("segmentation", visualizations.path("segmentation").asText(""));
-            response.put("visualizations", vizMap);
-
-            // Handle metadata
-            JsonNode metadata = result.path("metadata");
-            Map<String, String> metaMap = new HashMap<>();
-            metaMap.put("device", metadata.path("device").asText("unknown"));
-            metaMap.put("torch_version", metadata.path("torch_version").asText("unknown"));
-            metaMap.put("classification_model", metadata.path("classification_model").asText("unknown"));
-            metaMap.put("detection_model", metadata.path("detection_model").asText("unknown"));
-            metaMap.put("segmentation_model", metadata.path("segmentation_model").asText("unknown"));
-            metaMap.put("image_width", metadata.path("image_width").asText("0"));
-            metaMap.put("image_height", metadata.path("image_height").asText("0"));
-            response.put("metadata", metaMap);
-
-            return ResponseEntity.ok(response);
+            // otherwise queue the image behind this user's other work; the request thread
+            // is released while the job waits
+            return whenDone(
+                    analysisScheduler.submit(user, analysisPriority, () -> pythonService.analyzeImage(image)),
+                    resultJson -> buildResponse(resultJson, false, user, fingerprint),
+                    "Image processing failed");
 
+        } catch (RejectedExecutionException e) {
+            return completed(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("error", e.getMessage())));
         } catch (Exception e) {
-            logger.error("Image processing failed", e);
+            return completed(failure("Image processing failed", e));
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> buildResponse(String resultJson, boolean reused, String user,
+            PerceptualHash.Fingerprint fingerprint) throws IOException {
+        JsonNode result = new ObjectMapper().readTree(resultJson);
+
+        // 4. Handle Python script errors
+        if (!result.path("success").asBoolean()) {
+            logger.error("Python processing error: {}", result);
             return ResponseEntity.internalServerError()
                     .body(Map.of(
+                            "error", result.path("error").asText("Processing failed"),
+                            "traceback", result.path("traceback").asText("")));
+        }
+        if (!reused) {
+            resultReuseService.remember(user, fingerprint, resultJson);
+        }
+
+        // 5. Build complete response with all fields
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("classification", result.path("classification").asText("unknown"));
+
+        // Handle detections - ensure it's always an array
+        JsonNode detections = result.path("detections");
+        response.put("detections", detections.isMissingNode() ? new Object[0] : detections);
+
+        // Handle visualizations
+        JsonNode visualizations = result.path("visualizations");
+        Map<String, String> vizMap = new HashMap<>();
+        vizMap.put("detection", visualizations.path("detection").asText(""));
+        vizMap.put("segmentation", visualizations.path("segmentation").asText(""));
+        response.put("visualizations", vizMap);
+
+        // Handle metadata
+        JsonNode metadata = result.path("metadata");
+        Map<String, String> metaMap = new HashMap<>();
+        metaMap.put("device", metadata.path("device").asText("unknown"));
+        metaMap.put("torch_version", metadata.path("torch_version").asText("unknown"));
+        metaMap.put("classification_model", metadata.path("classification_model").asText("unknown"));
+        metaMap.put("detection_model", metadata.path("detection_model").asText("unknown"));
+        metaMap.put("segmentation_model", metadata.path("segmentation_model").asText("unknown"));
+        metaMap.put("image_width", metadata.path("image_width").asText("0"));
+        metaMap.put("image_height", metadata.path("image_height").asText("0"));
+        metaMap.put("reused", String.valueOf(reused));
+        response.put("metadata", metaMap);
+
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping(value = "/analyze/animated", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public DeferredResult<ResponseEntity<Map<String, Object>>> analyzeAnimation(
+            @RequestParam("media") MultipartFile media,
+            @RequestParam(value = "fps", required = false) Double fps,
+            @RequestParam(value = "priority", required = false) String priority,
+            Principal principal) {
+
+        try {
+            if (media.isEmpty()) {
+                return completed(ResponseEntity.badRequest()
+                        .body(Map.of("error", "No media provided")));
+            }
+
+            if (!FrameDecoder.isSupported(media.getContentType())) {
+                return completed(ResponseEntity.badRequest()
+                        .body(Map.of("error", "Only GIF images and videos are allowed")));
+            }
+
+            AnalysisPriority analysisPriority;
+            try {
+                analysisPriority = AnalysisPriority.from(priority);
+            } catch (IllegalArgumentException e) {
+                return completed(ResponseEntity.badRequest()
+                        .body(Map.of("error", e.getMessage())));
+            }
+
+            // every sampled frame is an analyzer run, so the job costs the expected frame count
+            int frames;
+            try {
+                frames = animationAnalysisService.estimateCost(media, fps);
+            } catch (MediaTooLargeException e) {
+                return completed(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                        .body(Map.of("error", e.getMessage())));
+            } catch (IOException e) {
+                return completed(ResponseEntity.badRequest()
+                        .body(Map.of("error", "Could not read the animation")));
+            }
+            return whenDone(
+                    analysisScheduler.submit(principal.getName(), analysisPriority, frames,
+                            () -> animationAnalysisService.analyze(media, fps)),
+                    ResponseEntity::ok,
+                    "Animation processing failed");
+
+        } catch (RejectedExecutionException e) {
+            return completed(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("error", e.getMessage())));
+        } catch (Exception e) {
+            return completed(failure("Animation processing failed", e));
+        }
+    }
+
+    // detection only, at full resolution: large photos are split into overlapping tiles that
+    // are analyzed in parallel, so small or distant pets are not lost to the 10MP downscale
+    @PostMapping(value = "/analyze/tiled", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public DeferredResult<ResponseEntity<Map<String, Object>>> analyzeImageTiled(
+            @RequestParam("image") MultipartFile image,
+            @RequestParam(value = "priority", required = false) String priority,
+            Principal principal) {
+
+        try {
+            if (image.isEmpty()) {
+                return completed(ResponseEntity.badRequest()
+                        .body(Map.of("error", "No image provided")));
+            }
+
+            String contentType = image.getContentType();
+            if (contentType == null || !contentType.startsWith("image/")) {
+                return completed(ResponseEntity.badRequest()
+                        .body(Map.of("error", "Only image files are allowed")));
+            }
+
+            AnalysisPriority analysisPriority;
+            try {
+                analysisPriority = AnalysisPriority.from(priority);
+            } catch (IllegalArgumentException e) {
+                return completed(ResponseEntity.badRequest()
+                        .body(Map.of("error", e.getMessage())));
+            }
+
+            // every tile is an analyzer run, so the job costs one unit per tile
+            byte[] imageData = image.getBytes();
+            int tiles;
+            try {
+                tiles = tiledDetectionService.estimateTiles(imageData);
+            } catch (MediaTooLargeException e) {
+                return completed(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                        .body(Map.of("error", e.getMessage())));
+            } catch (IOException e) {
+                return completed(ResponseEntity.badRequest()
+                        .body(Map.of("error", "Unsupported image format")));
+            }
+            return whenDone(
+                    analysisScheduler.submit(principal.getName(), analysisPriority, tiles,
+                            () -> tiledDetectionService.detect(imageData)),
+                    ResponseEntity::ok,
+                    "Image processing failed");
+
+        } catch (RejectedExecutionException e) {
+            return completed(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("error", e.getMessage())));
+        } catch (Exception e) {
+            return completed(failure("Image processing failed", e));
+        }
+    }
+
+    private interface ResultHandler<T> {
+        ResponseEntity<Map<String, Object>> apply(T value) throws Exception;
+    }
+
+    // answers once the scheduled job is done without holding a request thread meanwhile.
+    // on timeout or a broken connection the job is cancelled, which takes it out of the
+    // queue if it has not started yet
+    private <T> DeferredResult<ResponseEntity<Map<String, Object>>> whenDone(CompletableFuture<T> job,
+            ResultHandler<T> handler, String failureMessage) {
+        DeferredResult<ResponseEntity<Map<String, Object>>> deferred = new DeferredResult<>(requestTimeoutMs);
+        deferred.onTimeout(() -> {
+            job.cancel(false);
+            deferred.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Analysis did not finish in time, please try again later")));
+        });
+        deferred.onError(error -> job.cancel(false));
+        job.whenComplete((value, error) -> {
+            if (job.isCancelled()) {
+                return;
+            }
+            try {
+                if (error != null) {
+                    deferred.setResult(failure(failureMessage, error));
+                } else {
+                    deferred.setResult(handler.apply(value));
+                }
+            } catch (Exception e) {
+                deferred.setResult(failure(failureMessage, e));
+            }
+        });
+        return deferred;
+    }
+
+    private static DeferredResult<ResponseEntity<Map<String, Object>>> completed(
+            ResponseEntity<Map<String, Object>> response) {
+        DeferredResult<ResponseEntity<Map<String, Object>>> deferred = new DeferredResult<>();
+        deferred.setResult(response);
+        return deferred;
+    }
+
+    private ResponseEntity<Map<String, Object>> failure(String message, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof MediaTooLargeException) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(Map.of("error", cause.getMessage()));
+        }
+        logger.error(message, cause);
+        return ResponseEntity.internalServerError()
+                .body(Map.of(
+                        "error", message,
+                        "details", String.valueOf(cause.getMessage()),
+                        "exception", cause.getClass().getSimpleName()));
+    }
+
+    // same analysis as /analyze, but every stage is sent as a server-sent event
+    // (classification, detections, detection_image, segmentation, done) as soon as it is ready
+    @PostMapping(value = "/analyze/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> analyzeImageStream(
+            @RequestParam("image") MultipartFile image,
+            @RequestParam(value = "priority", required = false) String priority,
+            Principal principal) {
+        long requestStart = System.nanoTime();
+
+        if (image.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(errorStream(Map.of("error", "No image provided")));
+        }
+        String contentType = image.getContentType();
+        if (contentType == null || !contentType.startsWith("image/")) {
+            return ResponseEntity.badRequest()
+                    .body(errorStream(Map.of("error", "Only image files are allowed")));
+        }
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        try {
+            // the upload is gone once this method returns, keep the bytes
+            byte[] imageData = image.getBytes();
+            CompletableFuture<Void> job = progressiveAnalysisService
+                    .analyze(principal.getName(), AnalysisPriority.from(priority), imageData, requestStart,
+                            (stage, record) -> sendEvent(emitter, stage, record));
+            job.whenComplete((ignored, error) -> {
+                if (error != null && !job.isCancelled()) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    logger.error("Streaming analysis failed", cause);
+                    sendEvent(emitter, "error", Map.of(
                             "error", "Image processing failed",
-                            "details", e.getMessage(),
-                            "exception", e.getClass().getSimpleName()));
+                            "details", String.valueOf(cause.getMessage())));
+                }
+                emitter.complete();
+            });
+            // cancel the scheduler's future itself, not a stage derived from it: only that takes a
+            // queued job of a client that went away out of its queue. a running one still finishes
+            // and ends up in the near-duplicate index
+            emitter.onTimeout(() -> job.cancel(false));
+            emitter.onError(error -> job.cancel(false));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(errorStream(Map.of("error", e.getMessage())));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(errorStream(Map.of("error", e.getMessage())));
+        } catch (IOException e) {
+            logger.error("Image processing failed", e);
+            return ResponseEntity.internalServerError()
+                    .body(errorStream(Map.of("error", "Image processing failed",
+                            "details", String.valueOf(e.getMessage()))));
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    // Spring only streams a declared ResponseEntity<SseEmitter>, so request errors are sent
+    // as a single "error" event together with the status code
+    private SseEmitter errorStream(Map<String, Object> error) {
+        SseEmitter emitter = new SseEmitter();
+        sendEvent(emitter, "error", error);
+        emitter.complete();
+        return emitter;
+    }
+
+    // a client that went away must not break the analysis, its result is still cached
+    private void sendEvent(SseEmitter emitter, String stage, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(stage).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Could not send '{}' event: {}", stage, e.getMessage());
         }
     }
 }
\ No newline at end of file
@@ -10,5 +10,4 @@ import com.rana.backend.model.User;
 @Repository
 public interface UserRepo extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
-    boolean existsByEmail(String email);
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package com.rana.backend.security;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    // runs after JwtAuthFilter so the JWT subject (email) is already in the security context
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain)
+            throws ServletException, IOException {
+
+        RateLimiter.Category category = categoryOf(request);
+        String user = authenticatedUser();
+
+        // unauthenticated analysis calls are rejected by the authorization rules anyway.
+        // login and register callers have no token, so auth endpoints are keyed by client
+        // address; behind a proxy it comes from X-Forwarded-For (server.forward-headers-strategy)
+        if (category == null || (category == RateLimiter.Category.ANALYZE && user == null)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String key = category == RateLimiter.Category.AUTH ? request.getRemoteAddr() : user;
+        TokenBucket.Probe probe = rateLimiter.tryConsume(category, key);
+
+        response.setHeader("RateLimit-Limit", String.valueOf(probe.limit()));
+        response.setHeader("RateLimit-Remaining", String.valueOf(probe.remaining()));
+        response.setHeader("RateLimit-Reset", String.valueOf(toSeconds(probe.nanosToFull())));
+
+        if (!probe.consumed()) {
+            response.setHeader("Retry-After", String.valueOf(toSeconds(probe.nanosToNextToken())));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Too many requests, please try again later\"}");
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private RateLimiter.Category categoryOf(HttpServletRequest request) {
+        String path = request.getServletPath();
+        if (path.startsWith("/api/pets/")) {
+            return RateLimiter.Category.ANALYZE;
+        }
+        // only the endpoints that run BCrypt; /verify is called on every page load
+        if (path.equals("/api/auth/login") || path.equals("/api/auth/register")) {
+            return RateLimiter.Category.AUTH;
+        }
+        return null;
+    }
+
+    private String authenticatedUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null
+                || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private static long toSeconds(long nanos) {
+        return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+    }
+}
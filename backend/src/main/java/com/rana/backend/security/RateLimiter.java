@@ -0,0 +1,99 @@
+package com.rana.backend.security;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// keeps one token bucket per (category, key) and evicts buckets that have been idle
+// for a while. analysis is keyed by user email, auth by client address
+@Component
+public class RateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(RateLimiter.class);
+
+    public enum Category {
+        ANALYZE,
+        AUTH
+    }
+
+    private final Map<Category, Limit> defaults = new HashMap<>();
+    private final Map<Category, Map<String, Limit>> overrides = new HashMap<>();
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final long idleEvictionNanos;
+
+    public RateLimiter(
+            @Value("${ratelimit.analyze.capacity:10}") long analyzeCapacity,
+            @Value("${ratelimit.analyze.refill-per-minute:10}") long analyzeRefill,
+            @Value("${ratelimit.analyze.overrides:}") String analyzeOverrides,
+            @Value("${ratelimit.auth.capacity:5}") long authCapacity,
+            @Value("${ratelimit.auth.refill-per-minute:5}") long authRefill,
+            @Value("${ratelimit.auth.overrides:}") String authOverrides,
+            @Value("${ratelimit.idle-eviction-minutes:10}") long idleEvictionMinutes) {
+        defaults.put(Category.ANALYZE, new Limit(analyzeCapacity, analyzeRefill));
+        defaults.put(Category.AUTH, new Limit(authCapacity, authRefill));
+        overrides.put(Category.ANALYZE, parseOverrides(analyzeOverrides));
+        overrides.put(Category.AUTH, parseOverrides(authOverrides));
+        this.idleEvictionNanos = TimeUnit.MINUTES.toNanos(idleEvictionMinutes);
+    }
+
+    public TokenBucket.Probe tryConsume(Category category, String key) {
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.computeIfAbsent(
+                category + "|" + key,
+                k -> limitFor(category, key).newBucket(now));
+        return bucket.tryConsume(now);
+    }
+
+    // drops buckets nobody has touched within the idle window; a returning
+    // user simply starts again with a full bucket
+    @Scheduled(fixedDelayString = "${ratelimit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> now - bucket.getLastAccessNanos() > idleEvictionNanos);
+        int evicted = before - buckets.size();
+        if (evicted > 0) {
+            logger.debug("Evicted {} idle rate limit buckets, {} remaining", evicted, buckets.size());
+        }
+    }
+
+    private Limit limitFor(Category category, String key) {
+        return overrides.get(category).getOrDefault(key, defaults.get(category));
+    }
+
+    // format: key=capacity:refillPerMinute, comma separated; the key is an email for
+    // analysis and a client address (e.g. 203.0.113.7 or 2001:db8::1) for auth
+    private static Map<String, Limit> parseOverrides(String raw) {
+        Map<String, Limit> result = new HashMap<>();
+        if (raw == null || raw.isBlank()) {
+            return result;
+        }
+        for (String entry : raw.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            String[] keyAndLimit = trimmed.split("=", 2);
+            String[] values = keyAndLimit.length == 2 ? keyAndLimit[1].split(":", 2) : new String[0];
+            if (values.length != 2) {
+                throw new IllegalArgumentException("Invalid rate limit override: " + trimmed);
+            }
+            result.put(keyAndLimit[0].trim(), new Limit(
+                    Long.parseLong(values[0].trim()),
+                    Long.parseLong(values[1].trim())));
+        }
+        return result;
+    }
+
+    private record Limit(long capacity, long refillPerMinute) {
+        TokenBucket newBucket(long nowNanos) {
+            return new TokenBucket(capacity, refillPerMinute, 1, TimeUnit.MINUTES, nowNanos);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.rana.backend.security;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// token bucket whose state is swapped with compare-and-set, so concurrent
+// requests from the same user never block each other
+public class TokenBucket {
+
+    private final long capacity;
+    private final double tokensPerNano;
+    private final AtomicReference<State> state;
+    private volatile long lastAccessNanos;
+
+    public TokenBucket(long capacity, long refillTokens, long refillPeriod, TimeUnit unit, long nowNanos) {
+        if (capacity <= 0 || refillTokens <= 0 || refillPeriod <= 0) {
+            throw new IllegalArgumentException("capacity and refill rate must be positive");
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = (double) refillTokens / unit.toNanos(refillPeriod);
+        this.state = new AtomicReference<>(new State(capacity, nowNanos));
+        this.lastAccessNanos = nowNanos;
+    }
+
+    // tries to take one token and reports what is left for the rate limit headers
+    public Probe tryConsume(long nowNanos) {
+        lastAccessNanos = nowNanos;
+        while (true) {
+            State current = state.get();
+            double tokens = refill(current, nowNanos);
+            boolean consumed = tokens >= 1.0;
+            State next = new State(consumed ? tokens - 1.0 : tokens, Math.max(nowNanos, current.timestamp()));
+            if (state.compareAndSet(current, next)) {
+                return new Probe(
+                        consumed,
+                        capacity,
+                        (long) Math.floor(next.tokens()),
+                        consumed ? 0 : nanosUntil(next.tokens(), 1.0),
+                        nanosUntil(next.tokens(), capacity));
+            }
+        }
+    }
+
+    public long getLastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    private double refill(State current, long nowNanos) {
+        long elapsed = Math.max(0, nowNanos - current.timestamp());
+        return Math.min(capacity, current.tokens() + elapsed * tokensPerNano);
+    }
+
+    private long nanosUntil(double tokens, double target) {
+        if (tokens >= target) {
+            return 0;
+        }
+        return (long) Math.ceil((target - tokens) / tokensPerNano);
+    }
+
+    private record State(double tokens, long timestamp) {
+    }
+
+    public record Probe(
+            boolean consumed,
+            long limit,
+            long remaining,
+            long nanosToNextToken,
+            long nanosToFull) {
+    }
+}
@@ -7,18 +7,27 @@ import com.rana.backend.model.User;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 @AllArgsConstructor
 public class UserDetailsImpl implements UserDetails {
 
     private final User user;
+    private final boolean admin;
 
     public static UserDetailsImpl build(User user) {
-        return new UserDetailsImpl(user);
+        return new UserDetailsImpl(user, false);
+    }
+
+    public static UserDetailsImpl build(User user, boolean admin) {
+        return new UserDetailsImpl(user, admin);
     }
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
+        if (admin) {
+            return List.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN"));
+        }
         return Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"));
     }
 
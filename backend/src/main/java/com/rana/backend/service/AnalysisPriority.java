@@ -0,0 +1,20 @@
+package com.rana.backend.service;
+
+import java.util.Locale;
+
+// priority classes of the analysis scheduler, served strictly in declaration order
+public enum AnalysisPriority {
+    INTERACTIVE,
+    BULK;
+
+    public static AnalysisPriority from(String value) {
+        if (value == null || value.isBlank()) {
+            return INTERACTIVE;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown priority: " + value);
+        }
+    }
+}
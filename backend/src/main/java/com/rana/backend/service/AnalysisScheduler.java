@@ -0,0 +1,280 @@
+package com.rana.backend.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// sits in front of PythonService and hands analysis work to a fixed set of workers.
+// every user gets its own queue; queues of the same priority class are served in
+// deficit round robin order so one large album cannot starve single uploads
+@Service
+public class AnalysisScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisScheduler.class);
+
+    private final MeterRegistry meterRegistry;
+    private final int workerCount;
+    private final int quantum;
+    private final int maxQueuedPerUser;
+    private final Map<String, Integer> weights;
+    private final int metricUserBuckets;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Map<AnalysisPriority, PriorityClass> classes = new EnumMap<>(AnalysisPriority.class);
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public AnalysisScheduler(
+            MeterRegistry meterRegistry,
+            AnalyzerResources analyzerResources,
+            @Value("${analysis.scheduler.workers:0}") int workerCount,
+            @Value("${analysis.scheduler.quantum:1}") int quantum,
+            @Value("${analysis.scheduler.max-queued-per-user:50}") int maxQueuedPerUser,
+            @Value("${analysis.scheduler.weights:}") String weights,
+            @Value("${analysis.scheduler.metric-user-buckets:16}") int metricUserBuckets) {
+        this.meterRegistry = meterRegistry;
+        // by default one worker per analyzer the node can run concurrently
+        this.workerCount = workerCount > 0 ? workerCount : analyzerResources.getConcurrency();
+        this.quantum = Math.max(1, quantum);
+        this.maxQueuedPerUser = maxQueuedPerUser;
+        this.weights = parseWeights(weights);
+        this.metricUserBuckets = Math.max(1, metricUserBuckets);
+        for (AnalysisPriority priority : AnalysisPriority.values()) {
+            PriorityClass priorityClass = new PriorityClass();
+            classes.put(priority, priorityClass);
+            meterRegistry.gauge("analysis.queue.depth",
+                    List.of(Tag.of("priority", priority.name().toLowerCase())),
+                    priorityClass, pc -> pc.queuedJobs);
+        }
+    }
+
+    @PostConstruct
+    void startWorkers() {
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::workLoop, "analysis-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        logger.info("Analysis scheduler started with {} workers", workerCount);
+    }
+
+    @PreDestroy
+    void stopWorkers() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    public <T> CompletableFuture<T> submit(String user, AnalysisPriority priority, Callable<T> task) {
+        return submit(user, priority, 1, task);
+    }
+
+    // cost is the number of analyzer runs the task stands for (e.g. frames of an animation)
+    public <T> CompletableFuture<T> submit(String user, AnalysisPriority priority, int cost, Callable<T> task) {
+        Job<T> job = new Job<>(user, priority, Math.max(1, cost), task, System.nanoTime());
+        lock.lock();
+        try {
+            PriorityClass priorityClass = classes.get(priority);
+            UserQueue queue = priorityClass.queues.get(user);
+            if (queue == null) {
+                queue = new UserQueue(user, weights.getOrDefault(user, 1));
+                priorityClass.queues.put(user, queue);
+                priorityClass.ring.addLast(queue);
+            } else if (queue.jobs.size() >= maxQueuedPerUser) {
+                throw new RejectedExecutionException("Too many queued analyses for " + user);
+            }
+            queue.jobs.addLast(job);
+            priorityClass.queuedJobs++;
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        // a caller that gave up (timeout, client gone) frees its place in the queue;
+        // a job that is already running finishes normally
+        job.future.whenComplete((result, error) -> {
+            if (job.future.isCancelled()) {
+                dequeue(job);
+            }
+        });
+        return job.future;
+    }
+
+    private void dequeue(Job<?> job) {
+        lock.lock();
+        try {
+            PriorityClass priorityClass = classes.get(job.priority);
+            UserQueue queue = priorityClass.queues.get(job.user);
+            if (queue != null && queue.jobs.remove(job)) {
+                priorityClass.queuedJobs--;
+                if (queue.jobs.isEmpty()) {
+                    priorityClass.queues.remove(job.user);
+                    priorityClass.ring.remove(queue);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void workLoop() {
+        while (running) {
+            Job<?> job;
+            try {
+                job = take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long waited = System.nanoTime() - job.enqueuedNanos;
+            queueWaitTimer(job.user, job.priority).record(waited, TimeUnit.NANOSECONDS);
+            job.run();
+        }
+    }
+
+    private Job<?> take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                Job<?> job = nextJob();
+                if (job == null) {
+                    workAvailable.await();
+                } else if (!job.future.isCancelled()) {
+                    return job;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Job<?> nextJob() {
+        for (PriorityClass priorityClass : classes.values()) {
+            Job<?> job = priorityClass.next(quantum);
+            if (job != null) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    // users are folded into a fixed number of hashed buckets: emails must not show up in
+    // metrics, and the number of tag values has to stay bounded
+    private Timer queueWaitTimer(String user, AnalysisPriority priority) {
+        return Timer.builder("analysis.queue.wait")
+                .description("Time an analysis request waited in its user queue")
+                .tag("user_bucket", String.valueOf(Math.floorMod(user.hashCode(), metricUserBuckets)))
+                .tag("priority", priority.name().toLowerCase())
+                .register(meterRegistry);
+    }
+
+    // format: user@example.com=weight, comma separated
+    private static Map<String, Integer> parseWeights(String raw) {
+        Map<String, Integer> result = new HashMap<>();
+        if (raw == null || raw.isBlank()) {
+            return result;
+        }
+        for (String entry : raw.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            String[] parts = trimmed.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid scheduler weight: " + trimmed);
+            }
+            result.put(parts[0].trim(), Math.max(1, Integer.parseInt(parts[1].trim())));
+        }
+        return result;
+    }
+
+    // all fields below are guarded by the scheduler lock
+    private static class PriorityClass {
+        final Map<String, UserQueue> queues = new HashMap<>();
+        final ArrayDeque<UserQueue> ring = new ArrayDeque<>();
+        // also read without the lock by the queue depth gauge
+        volatile int queuedJobs;
+
+        // deficit round robin: the queue at the head keeps dispatching while its
+        // deficit covers the next job, otherwise it gets a fresh quantum and moves back
+        Job<?> next(int quantum) {
+            while (!ring.isEmpty()) {
+                UserQueue queue = ring.peekFirst();
+                Job<?> head = queue.jobs.peekFirst();
+                if (queue.deficit >= head.cost) {
+                    queue.deficit -= head.cost;
+                    queue.jobs.pollFirst();
+                    queuedJobs--;
+                    if (queue.jobs.isEmpty()) {
+                        ring.pollFirst();
+                        queues.remove(queue.user);
+                    }
+                    return head;
+                }
+                ring.pollFirst();
+                queue.deficit += (long) quantum * queue.weight;
+                ring.addLast(queue);
+            }
+            return null;
+        }
+    }
+
+    private static class UserQueue {
+        final String user;
+        final int weight;
+        final ArrayDeque<Job<?>> jobs = new ArrayDeque<>();
+        long deficit;
+
+        UserQueue(String user, int weight) {
+            this.user = user;
+            this.weight = weight;
+        }
+    }
+
+    private static class Job<T> {
+        final String user;
+        final AnalysisPriority priority;
+        final int cost;
+        final Callable<T> task;
+        final long enqueuedNanos;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Job(String user, AnalysisPriority priority, int cost, Callable<T> task, long enqueuedNanos) {
+            this.user = user;
+            this.priority = priority;
+            this.cost = cost;
+            this.task = task;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+
+        void run() {
+            if (future.isCancelled()) {
+                return;
+            }
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
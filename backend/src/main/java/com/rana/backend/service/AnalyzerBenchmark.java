@@ -0,0 +1,160 @@
+package com.rana.backend.service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// sweeps analyzer concurrency levels (threads per process = cores / concurrency) on a
+// sample image at startup and logs which configuration gives the best throughput.
+// enable with analyzer.benchmark.enabled=true and analyzer.benchmark.image=/path/to.jpg.
+// with analyzer.benchmark.tiling=true the tiled and untiled detection paths are compared too
+@Component
+@ConditionalOnProperty(name = "analyzer.benchmark.enabled", havingValue = "true")
+public class AnalyzerBenchmark implements ApplicationRunner {
+    private static final Logger logger = LoggerFactory.getLogger(AnalyzerBenchmark.class);
+
+    private final PythonService pythonService;
+    private final AnalyzerResources analyzerResources;
+    private final TiledDetectionService tiledDetectionService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${analyzer.benchmark.image:}")
+    private String imagePath;
+
+    @Value("${analyzer.benchmark.images-per-config:8}")
+    private int imagesPerConfig;
+
+    @Value("${analyzer.benchmark.tiling:false}")
+    private boolean compareTiling;
+
+    public AnalyzerBenchmark(PythonService pythonService, AnalyzerResources analyzerResources,
+            TiledDetectionService tiledDetectionService) {
+        this.pythonService = pythonService;
+        this.analyzerResources = analyzerResources;
+        this.tiledDetectionService = tiledDetectionService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (imagePath.isBlank() || !Files.isReadable(Path.of(imagePath))) {
+            logger.warn("Analyzer benchmark skipped: analyzer.benchmark.image is not a readable file");
+            return;
+        }
+        Path image = Path.of(imagePath);
+
+        List<Result> results = new ArrayList<>();
+        for (int concurrency : candidates()) {
+            Result result = measure(image, concurrency);
+            results.add(result);
+            logger.info("BENCHMARK concurrency={} threads={} model_load={}ms throughput={} img/s avg_latency={}ms",
+                    result.concurrency, result.threads, result.modelLoadMs,
+                    String.format("%.2f", result.imagesPerSecond), result.avgLatencyMs);
+        }
+
+        Result best = results.stream().max(Comparator.comparingDouble(Result::imagesPerSecond)).orElseThrow();
+        logger.info("BENCHMARK best: analyzer.concurrency={} ({} threads per analyzer, {} img/s), currently {}",
+                best.concurrency, best.threads, String.format("%.2f", best.imagesPerSecond),
+                analyzerResources.getConcurrency());
+
+        if (compareTiling) {
+            compareTiling(image);
+        }
+    }
+
+    // end to end detection latency, model loading included, since both paths start
+    // their analyzers per request
+    private void compareTiling(Path image) throws Exception {
+        long start = System.nanoTime();
+        int untiledDetections;
+        try (AnalyzerSession session = pythonService.openSession("--detect-only")) {
+            session.submit(image);
+            untiledDetections = objectMapper.readTree(session.nextResult()).path("detections").size();
+        }
+        long untiledMs = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        Map<String, Object> tiled = tiledDetectionService.detect(Files.readAllBytes(image));
+        long tiledMs = (System.nanoTime() - start) / 1_000_000;
+        Map<?, ?> metadata = (Map<?, ?>) tiled.get("metadata");
+
+        logger.info("BENCHMARK untiled: latency={}ms detections={}", untiledMs, untiledDetections);
+        logger.info("BENCHMARK tiled: latency={}ms detections={} tiles={} parallelism={}",
+                tiledMs, ((List<?>) tiled.get("detections")).size(), metadata.get("tiles"),
+                metadata.get("parallelism"));
+    }
+
+    // 1, 2, 4, ... up to the largest concurrency the node can hold
+    private List<Integer> candidates() {
+        int max = Math.min(analyzerResources.maxConcurrency(), analyzerResources.getCores());
+        TreeSet<Integer> candidates = new TreeSet<>();
+        for (int c = 1; c <= max; c *= 2) {
+            candidates.add(c);
+        }
+        candidates.add(max);
+        return new ArrayList<>(candidates);
+    }
+
+    private Result measure(Path image, int concurrency) throws Exception {
+        List<AnalyzerResources.Slot> plan = analyzerResources.plan(concurrency);
+        List<AnalyzerSession> sessions = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            // model loading is paid once per process, keep it out of the throughput figure
+            long loadStart = System.nanoTime();
+            for (AnalyzerResources.Slot slot : plan) {
+                AnalyzerSession session = pythonService.openSession(slot, () -> { });
+                sessions.add(session);
+                session.submit(image);
+            }
+            for (AnalyzerSession session : sessions) {
+                session.nextResult();
+            }
+            long modelLoadMs = (System.nanoTime() - loadStart) / 1_000_000;
+
+            int perSession = Math.max(1, imagesPerConfig / concurrency);
+            long start = System.nanoTime();
+            List<Future<Long>> latencies = new ArrayList<>();
+            for (AnalyzerSession session : sessions) {
+                latencies.add(executor.submit(() -> {
+                    long sessionStart = System.nanoTime();
+                    for (int i = 0; i < perSession; i++) {
+                        session.submit(image);
+                        session.nextResult();
+                    }
+                    return (System.nanoTime() - sessionStart) / perSession;
+                }));
+            }
+            long totalLatency = 0;
+            for (Future<Long> latency : latencies) {
+                totalLatency += latency.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            return new Result(concurrency, plan.get(0).intraOpThreads(), modelLoadMs,
+                    perSession * concurrency / seconds, totalLatency / concurrency / 1_000_000);
+        } finally {
+            executor.shutdownNow();
+            sessions.forEach(AnalyzerSession::close);
+        }
+    }
+
+    private record Result(int concurrency, int threads, long modelLoadMs, double imagesPerSecond, long avgLatencyMs) {
+    }
+}
@@ -0,0 +1,259 @@
+package com.rana.backend.service;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// works out how many analyzer processes this node can run side by side without
+// oversubscribing its cores or memory (cgroup limits included) and hands out
+// "slots": torch thread counts for each process plus, when the node is limited by a
+// cpuset, a disjoint set of CPUs
+@Component
+public class AnalyzerResources {
+    private static final Logger logger = LoggerFactory.getLogger(AnalyzerResources.class);
+
+    private static final Path CGROUP_ROOT = Path.of("/sys/fs/cgroup");
+
+    private final List<Integer> cpus;
+    private final int cores;
+    private final long analyzerMemoryBytes;
+    private final long memoryPerProcessBytes;
+    private final int minThreadsPerProcess;
+    private final int interOpThreads;
+    private final boolean pinCpus;
+    private final int concurrency;
+    private final BlockingQueue<Slot> slots;
+
+    @Autowired
+    public AnalyzerResources(
+            @Value("${analyzer.concurrency:0}") int configuredConcurrency,
+            @Value("${analyzer.min-threads-per-process:2}") int minThreadsPerProcess,
+            @Value("${analyzer.interop-threads:1}") int interOpThreads,
+            @Value("${analyzer.memory-per-process-mb:1500}") long memoryPerProcessMb,
+            @Value("${analyzer.pin-cpus:true}") boolean pinCpus) {
+        this(Host.detect(), configuredConcurrency, minThreadsPerProcess, interOpThreads, memoryPerProcessMb, pinCpus);
+    }
+
+    AnalyzerResources(Host host, int configuredConcurrency, int minThreadsPerProcess, int interOpThreads,
+            long memoryPerProcessMb, boolean pinCpus) {
+        this.cpus = host.cpus();
+        this.cores = host.cores();
+        this.analyzerMemoryBytes = host.analyzerMemoryBytes();
+        this.memoryPerProcessBytes = memoryPerProcessMb * 1024 * 1024;
+        this.minThreadsPerProcess = Math.max(1, minThreadsPerProcess);
+        this.interOpThreads = Math.max(1, interOpThreads);
+        // a CFS quota limits CPU time, not which CPUs the container runs on, so pinning is
+        // only done when the CPU set itself is the limit; otherwise only thread counts are set
+        this.pinCpus = pinCpus && cores == cpus.size();
+        this.concurrency = configuredConcurrency > 0 ? configuredConcurrency : maxConcurrency();
+
+        List<Slot> plan = plan(concurrency);
+        this.slots = new ArrayBlockingQueue<>(plan.size(), true, plan);
+        logger.info("Analyzer resources: {} cores on CPUs {}{}, {} MB for analyzers, {} concurrent analyzers with {} threads",
+                cores, cpus, this.pinCpus ? " (pinned)" : "",
+                analyzerMemoryBytes < 0 ? "unknown" : analyzerMemoryBytes / (1024 * 1024), concurrency,
+                plan.stream().map(Slot::intraOpThreads).toList());
+    }
+
+    public int getCores() {
+        return cores;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    // largest concurrency where every analyzer still gets its minimum thread count
+    // and its memory budget
+    public int maxConcurrency() {
+        int byCores = Math.max(1, cores / minThreadsPerProcess);
+        if (analyzerMemoryBytes < 0) {
+            return byCores;
+        }
+        int byMemory = (int) Math.max(1, analyzerMemoryBytes / memoryPerProcessBytes);
+        return Math.min(byCores, byMemory);
+    }
+
+    // splits the cores between n concurrent analyzers, each pinned to its own contiguous
+    // group of CPUs when pinning applies. groups differ by at most one CPU when the cores do
+    // not divide evenly, and every analyzer runs as many threads as its group has CPUs
+    public List<Slot> plan(int n) {
+        int count = Math.max(1, n);
+        List<Slot> plan = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int from = i * cores / count;
+            int to = Math.max(from + 1, (i + 1) * cores / count);
+            List<Integer> group = cpus.subList(Math.min(from, cores - 1), Math.min(to, cores));
+            plan.add(new Slot(i, pinCpus && count <= cores ? List.copyOf(group) : List.of(),
+                    group.size(), interOpThreads));
+        }
+        return plan;
+    }
+
+    public Slot acquire() throws InterruptedException {
+        return slots.take();
+    }
+
+    // null when every slot is busy
+    public Slot tryAcquire() {
+        return slots.poll();
+    }
+
+    public void release(Slot slot) {
+        if (slot != null) {
+            slots.offer(slot);
+        }
+    }
+
+    public record Slot(int index, List<Integer> cpus, int intraOpThreads, int interOpThreads) {
+
+        // analyze.py applies these before the models are loaded
+        public void applyTo(Map<String, String> environment) {
+            String threads = String.valueOf(intraOpThreads);
+            environment.put("OMP_NUM_THREADS", threads);
+            environment.put("MKL_NUM_THREADS", threads);
+            environment.put("OPENBLAS_NUM_THREADS", threads);
+            environment.put("ANALYZER_INTRA_OP_THREADS", threads);
+            environment.put("ANALYZER_INTER_OP_THREADS", String.valueOf(interOpThreads));
+            if (!cpus.isEmpty()) {
+                environment.put("ANALYZER_CPU_AFFINITY",
+                        cpus.stream().map(String::valueOf).collect(Collectors.joining(",")));
+            }
+        }
+    }
+
+    // what the node offers: the CPUs this process may run on (its cpuset), the cores worth
+    // of CPU time it gets, and the memory left for analyzer processes (-1 if unknown)
+    record Host(List<Integer> cpus, int cores, long analyzerMemoryBytes) {
+
+        static Host detect() {
+            List<Integer> cpus = readAllowedCpus();
+            int available = Runtime.getRuntime().availableProcessors();
+            if (cpus.isEmpty()) {
+                for (int i = 0; i < available; i++) {
+                    cpus.add(i);
+                }
+            }
+            return new Host(List.copyOf(cpus), effectiveCores(cpus.size(), available, readCpuQuota()),
+                    detectAnalyzerMemory());
+        }
+    }
+
+    // cores worth of CPU time: the cpuset, capped by the cgroup CPU quota (-1 when unlimited)
+    static int effectiveCores(int allowedCpus, int availableProcessors, int quota) {
+        int limit = Math.min(allowedCpus, availableProcessors);
+        if (quota > 0) {
+            limit = Math.min(limit, quota);
+        }
+        return Math.max(1, limit);
+    }
+
+    private static List<Integer> readAllowedCpus() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("Cpus_allowed_list:")) {
+                    return parseCpuList(line.substring(line.indexOf(':') + 1));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("CPU affinity list not available: {}", e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
+    // kernel cpu list format, e.g. "0-3,8,10-11"
+    static List<Integer> parseCpuList(String list) {
+        List<Integer> result = new ArrayList<>();
+        for (String range : list.trim().split(",")) {
+            String[] bounds = range.trim().split("-");
+            int from = Integer.parseInt(bounds[0]);
+            int to = bounds.length > 1 ? Integer.parseInt(bounds[1]) : from;
+            for (int cpu = from; cpu <= to; cpu++) {
+                result.add(cpu);
+            }
+        }
+        return result;
+    }
+
+    // whole CPUs granted by the cgroup quota (v2 cpu.max or v1 cfs quota), -1 when unlimited
+    private static int readCpuQuota() {
+        try {
+            String v2 = readFirstLine(CGROUP_ROOT.resolve("cpu.max"));
+            if (v2 != null) {
+                return parseCpuMax(v2);
+            }
+            return parseCfsQuota(readFirstLine(CGROUP_ROOT.resolve("cpu/cpu.cfs_quota_us")),
+                    readFirstLine(CGROUP_ROOT.resolve("cpu/cpu.cfs_period_us")));
+        } catch (NumberFormatException e) {
+            logger.debug("Unreadable cgroup CPU quota: {}", e.getMessage());
+        }
+        return -1;
+    }
+
+    // cgroup v2 "quota period", or "max period" when unlimited
+    static int parseCpuMax(String cpuMax) {
+        String[] parts = cpuMax.trim().split("\\s+");
+        if (parts.length == 2 && !"max".equals(parts[0])) {
+            return (int) Math.ceil(Double.parseDouble(parts[0]) / Double.parseDouble(parts[1]));
+        }
+        return -1;
+    }
+
+    // cgroup v1 quota is -1 when unlimited
+    static int parseCfsQuota(String quota, String period) {
+        if (quota != null && period != null && Long.parseLong(quota) > 0) {
+            return (int) Math.ceil((double) Long.parseLong(quota) / Long.parseLong(period));
+        }
+        return -1;
+    }
+
+    // memory left for analyzer processes once this JVM's heap is accounted for, -1 if unknown
+    private static long detectAnalyzerMemory() {
+        String v2 = readFirstLine(CGROUP_ROOT.resolve("memory.max"));
+        String v1 = readFirstLine(CGROUP_ROOT.resolve("memory/memory.limit_in_bytes"));
+        long limit = parseMemoryLimit(v2 != null ? v2 : v1);
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            long physical = os.getTotalMemorySize();
+            limit = limit < 0 ? physical : Math.min(limit, physical);
+        }
+        if (limit < 0) {
+            return -1;
+        }
+        return Math.max(0, limit - Runtime.getRuntime().maxMemory());
+    }
+
+    // cgroup memory limit in bytes, -1 when there is none
+    static long parseMemoryLimit(String cgroupLimit) {
+        // cgroup v1 reports "no limit" as a huge page-aligned number
+        try {
+            if (cgroupLimit != null && !"max".equals(cgroupLimit) && Long.parseLong(cgroupLimit) < Long.MAX_VALUE / 2) {
+                return Long.parseLong(cgroupLimit);
+            }
+        } catch (NumberFormatException e) {
+            logger.debug("Unreadable cgroup memory limit: {}", e.getMessage());
+        }
+        return -1;
+    }
+
+    private static String readFirstLine(Path file) {
+        try {
+            List<String> lines = Files.readAllLines(file);
+            return lines.isEmpty() ? null : lines.get(0).trim();
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
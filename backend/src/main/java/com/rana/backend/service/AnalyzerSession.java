@@ -0,0 +1,84 @@
+package com.rana.backend.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// a long running analyzer process in --stream mode: image paths go in on stdin and
+// one JSON result per image comes back on stdout, in the same order.
+// submit() and nextResult() may be called from different threads so that new
+// images can be queued while earlier ones are still being analyzed
+public class AnalyzerSession implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AnalyzerSession.class);
+
+    private final Process process;
+    private final BufferedWriter input;
+    private final BufferedReader output;
+    private final Runnable onClose;
+    private boolean closed;
+
+    AnalyzerSession(Process process, Runnable onClose) {
+        this.process = process;
+        this.onClose = onClose;
+        this.input = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        this.output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    public synchronized void submit(Path image) throws IOException {
+        input.write(image.toAbsolutePath().toString());
+        input.newLine();
+        input.flush();
+    }
+
+    // tells the analyzer no more images will follow, it exits after the queued ones
+    public synchronized void finishInput() throws IOException {
+        input.close();
+    }
+
+    // blocks until the analyzer prints its next JSON record, other output is only logged
+    public String nextResult() throws IOException {
+        String line;
+        while ((line = output.readLine()) != null) {
+            if (line.startsWith("{")) {
+                return line;
+            }
+            logger.debug("PYTHON> {}", line);
+        }
+        throw new IOException("Analyzer exited before returning a result");
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        // stop the process first so a writer blocked on a full pipe is released
+        process.destroy();
+        try {
+            finishInput();
+        } catch (IOException e) {
+            logger.debug("Analyzer input already closed", e);
+        }
+        try {
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        } finally {
+            onClose.run();
+        }
+    }
+}
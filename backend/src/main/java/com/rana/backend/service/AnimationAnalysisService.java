@@ -0,0 +1,263 @@
+package com.rana.backend.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+
+// analyzes animated GIFs and short videos frame by frame. frames are decoded on a
+// separate thread and handed to a single analyzer session while earlier frames are
+// still being analyzed; analysis stops once a pet has been seen in enough
+// consecutive frames
+@Service
+public class AnimationAnalysisService {
+    private static final Logger logger = LoggerFactory.getLogger(AnimationAnalysisService.class);
+
+    private static final FrameRef END_OF_FRAMES = new FrameRef(-1, -1, null);
+
+    private final PythonService pythonService;
+    private final FrameDecoder frameDecoder;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger decoderThreads = new AtomicInteger();
+    private final ExecutorService decodeExecutor = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "frame-decoder-" + decoderThreads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${animation.sample-fps:2}")
+    private double defaultFps;
+
+    @Value("${animation.max-fps:10}")
+    private double maxFps;
+
+    @Value("${animation.max-frames:60}")
+    private int maxFrames;
+
+    @Value("${animation.confirm-frames:3}")
+    private int confirmFrames;
+
+    @Value("${animation.track-min-iou:0.3}")
+    private double trackMinIou;
+
+    // frames the decoder may submit before the analyzer has answered them; with the frame
+    // waiting for a permit, at most decode-ahead + 1 BMPs are on disk at a time
+    @Value("${animation.decode-ahead:2}")
+    private int decodeAhead;
+
+    public AnimationAnalysisService(PythonService pythonService, FrameDecoder frameDecoder) {
+        this.pythonService = pythonService;
+        this.frameDecoder = frameDecoder;
+    }
+
+    // analyzer runs the upload will take, for the scheduler; throws MediaTooLargeException
+    // for media over the decoding limits
+    public int estimateCost(MultipartFile media, Double requestedFps) throws IOException {
+        Path mediaFile = Files.createTempFile("pet-media-", ".bin");
+        try {
+            media.transferTo(mediaFile);
+            return frameDecoder.estimateFrames(mediaFile, media.getContentType(), sampleFps(requestedFps), maxFrames);
+        } finally {
+            Files.deleteIfExists(mediaFile);
+        }
+    }
+
+    public Map<String, Object> analyze(MultipartFile media, Double requestedFps) throws IOException {
+        double fps = sampleFps(requestedFps);
+        Path mediaFile = Files.createTempFile("pet-media-", ".bin");
+        Path workDir = Files.createTempDirectory("pet-frames-");
+        try {
+            media.transferTo(mediaFile);
+            return analyzeFrames(mediaFile, media.getContentType(), fps, workDir);
+        } finally {
+            deleteRecursively(workDir);
+            Files.deleteIfExists(mediaFile);
+        }
+    }
+
+    private double sampleFps(Double requestedFps) {
+        return requestedFps == null ? defaultFps : Math.min(Math.max(requestedFps, 0.1), maxFps);
+    }
+
+    private Map<String, Object> analyzeFrames(Path mediaFile, String contentType, double fps, Path workDir)
+            throws IOException {
+        AtomicBoolean stop = new AtomicBoolean();
+        Semaphore ahead = new Semaphore(Math.max(1, decodeAhead));
+        BlockingQueue<FrameRef> submitted = new LinkedBlockingQueue<>();
+        DetectionTracker tracker = new DetectionTracker(trackMinIou, 1);
+        List<Map<String, Object>> frames = new ArrayList<>();
+        int consecutivePetFrames = 0;
+        Integer confirmedAtFrame = null;
+        JsonNode lastMetadata = null;
+
+        Future<Integer> decoding = null;
+        // the response carries detections only, so classification and segmentation are skipped
+        try (AnalyzerSession session = pythonService.openSession("--detect-only")) {
+            // producer: decode and submit frames without waiting for their results, but no
+            // further ahead of the consumer than decode-ahead frames
+            decoding = decodeExecutor.submit(() -> {
+                try {
+                    return frameDecoder.decode(mediaFile, contentType, fps, maxFrames, workDir,
+                            (index, timestampMs, frame) -> {
+                                acquire(ahead);
+                                if (stop.get()) {
+                                    return;
+                                }
+                                submitted.add(new FrameRef(index, timestampMs, frame));
+                                session.submit(frame);
+                            },
+                            stop::get);
+                } finally {
+                    submitted.add(END_OF_FRAMES);
+                    session.finishInput();
+                }
+            });
+
+            // consumer: results come back in submission order
+            while (true) {
+                FrameRef frame = submitted.take();
+                if (frame == END_OF_FRAMES) {
+                    break;
+                }
+                JsonNode result = objectMapper.readTree(session.nextResult());
+                Files.deleteIfExists(frame.file());
+                ahead.release();
+
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("index", frame.index());
+                entry.put("timestamp_ms", frame.timestampMs());
+                if (!result.path("success").asBoolean()) {
+                    entry.put("error", result.path("error").asText("Processing failed"));
+                    frames.add(entry);
+                    consecutivePetFrames = 0;
+                    continue;
+                }
+
+                JsonNode detections = result.path("detections");
+                boolean petsDetected = result.path("metadata").path("pets_detected").asBoolean();
+                entry.put("pets_detected", petsDetected);
+                entry.put("detections", detections);
+                frames.add(entry);
+                tracker.update(frame.index(), detections);
+                lastMetadata = result.path("metadata");
+
+                consecutivePetFrames = petsDetected ? consecutivePetFrames + 1 : 0;
+                if (consecutivePetFrames >= confirmFrames) {
+                    confirmedAtFrame = frame.index();
+                    stop.set(true);
+                    break;
+                }
+            }
+
+            if (!stop.get()) {
+                decoding.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Animation analysis interrupted", e);
+        } catch (ExecutionException e) {
+            // oversized media is the client's fault and is answered with 413, not 500
+            if (e.getCause() instanceof MediaTooLargeException tooLarge) {
+                throw tooLarge;
+            }
+            throw new IOException("Frame decoding failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            stop.set(true);
+            // wakes a decoder waiting for a permit so it notices the stop flag
+            ahead.release(Math.max(1, decodeAhead));
+            awaitDecoder(decoding);
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("frames_analyzed", frames.size());
+        summary.put("sample_fps", fps);
+        summary.put("pet_confirmed", confirmedAtFrame != null);
+        summary.put("confirmed_at_frame", confirmedAtFrame);
+        summary.put("stopped_early", confirmedAtFrame != null);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", true);
+        response.put("frames", frames);
+        response.put("tracks", tracker.summary());
+        response.put("summary", summary);
+        if (lastMetadata != null) {
+            response.put("metadata", lastMetadata);
+        }
+        logger.info("Analyzed {} frames at {} fps, pet confirmed: {}", frames.size(), fps, confirmedAtFrame != null);
+        return response;
+    }
+
+    private static void acquire(Semaphore ahead) throws IOException {
+        try {
+            ahead.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Frame decoding interrupted", e);
+        }
+    }
+
+    // the decoder still writes into the work directory, so let it notice the stop flag first
+    private void awaitDecoder(Future<Integer> decoding) {
+        if (decoding == null) {
+            return;
+        }
+        try {
+            decoding.get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.debug("Frame decoder stopped: {}", e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            decoding.cancel(true);
+        }
+    }
+
+    private void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    logger.warn("Failed to delete temp file: {}", path, e);
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Failed to clean up frame directory: {}", dir, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        decodeExecutor.shutdownNow();
+    }
+
+    private record FrameRef(int index, long timestampMs, Path file) {
+    }
+}
@@ -1,10 +1,12 @@
 package com.rana.backend.service;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.rana.backend.dto.request.LoginRequest;
 import com.rana.backend.dto.request.RegisterRequest;
 import com.rana.backend.dto.response.AuthResponse;
 
 public interface AuthService {
-    AuthResponse register(RegisterRequest registerRequest);
-    AuthResponse login(LoginRequest loginRequest);
-}
\ No newline at end of file
+    CompletableFuture<AuthResponse> register(RegisterRequest registerRequest);
+    CompletableFuture<AuthResponse> login(LoginRequest loginRequest);
+}
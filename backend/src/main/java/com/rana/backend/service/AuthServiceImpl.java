@@ -1,10 +1,15 @@
 package com.rana.backend.service;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+
 import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.ConstraintViolationException.ConstraintKind;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -15,6 +20,8 @@ import com.rana.backend.model.User;
 import com.rana.backend.repo.UserRepo;
 import com.rana.backend.security.JwtUtils;
 
+// both operations run BCrypt, so they are handed to the bounded password hashing pool;
+// a full pool throws RejectedExecutionException right away
 @Service
 @RequiredArgsConstructor
 public class AuthServiceImpl implements AuthService {
@@ -22,34 +29,53 @@ public class AuthServiceImpl implements AuthService {
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
     private final JwtUtils jwtUtils;
+    private final ThreadPoolExecutor passwordHashingExecutor;
 
     @Override
-    public AuthResponse register(RegisterRequest registerRequest) {
-        if (userRepository.existsByEmail(registerRequest.email())) {
-            throw new IllegalArgumentException("Email is already taken");
-        }
-
-        User user = User.builder()
-                .email(registerRequest.email())
-                .password(passwordEncoder.encode(registerRequest.password()))
-                .build();
+    public CompletableFuture<AuthResponse> register(RegisterRequest registerRequest) {
+        return CompletableFuture.supplyAsync(() -> {
+            User user = User.builder()
+                    .email(registerRequest.email())
+                    .password(passwordEncoder.encode(registerRequest.password()))
+                    .build();
 
-        userRepository.save(user);
-        return new AuthResponse(
-                jwtUtils.generateJwtToken(user.getEmail()),
-                user.getEmail());
+            // single insert, the unique constraint on email rejects duplicates
+            try {
+                userRepository.saveAndFlush(user);
+            } catch (DataIntegrityViolationException e) {
+                if (isDuplicateEmail(e, user.getEmail())) {
+                    throw new IllegalArgumentException("Email is already taken");
+                }
+                throw e;
+            }
+            return new AuthResponse(
+                    jwtUtils.generateJwtToken(user.getEmail()),
+                    user.getEmail());
+        }, passwordHashingExecutor);
     }
 
     @Override
-    public AuthResponse login(LoginRequest loginRequest) {
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        loginRequest.email(),
-                        loginRequest.password()));
+    public CompletableFuture<AuthResponse> login(LoginRequest loginRequest) {
+        return CompletableFuture.supplyAsync(() -> {
+            Authentication authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(
+                            loginRequest.email(),
+                            loginRequest.password()));
 
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = jwtUtils.generateJwtToken(authentication.getName());
+            String jwt = jwtUtils.generateJwtToken(authentication.getName());
+            return new AuthResponse(jwt, loginRequest.email());
+        }, passwordHashingExecutor);
+    }
 
-        return new AuthResponse(jwt, loginRequest.email());
+    // only a unique violation caused by an existing row with this email means the email is
+    // taken; the generated constraint name differs per database, so the row is looked up
+    private boolean isDuplicateEmail(DataIntegrityViolationException e, String email) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return violation.getKind() == ConstraintKind.UNIQUE
+                        && userRepository.findByEmail(email).isPresent();
+            }
+        }
+        return false;
     }
-}
\ No newline at end of file
+}
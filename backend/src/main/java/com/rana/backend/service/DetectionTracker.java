@@ -0,0 +1,109 @@
+package com.rana.backend.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+// links detections of consecutive frames into tracks by greedy IoU matching of
+// boxes with the same class; not thread safe, one tracker per animation
+public class DetectionTracker {
+
+    private final double minIou;
+    private final int maxGapFrames;
+    private final List<Track> tracks = new ArrayList<>();
+
+    public DetectionTracker(double minIou, int maxGapFrames) {
+        this.minIou = minIou;
+        this.maxGapFrames = maxGapFrames;
+    }
+
+    public void update(int frameIndex, JsonNode detections) {
+        List<Track> claimed = new ArrayList<>();
+        for (JsonNode detection : detections) {
+            String label = detection.path("class").asText("unknown");
+            double confidence = detection.path("confidence").asDouble();
+            double[] box = toBox(detection.path("bbox"));
+
+            Track best = null;
+            double bestIou = minIou;
+            for (Track track : tracks) {
+                if (claimed.contains(track)
+                        || !track.label.equals(label)
+                        || frameIndex - track.lastFrame > maxGapFrames + 1) {
+                    continue;
+                }
+                double iou = iou(track.lastBox, box);
+                if (iou >= bestIou) {
+                    best = track;
+                    bestIou = iou;
+                }
+            }
+
+            if (best == null) {
+                best = new Track(tracks.size() + 1, label, frameIndex);
+                tracks.add(best);
+            }
+            best.add(frameIndex, box, confidence);
+            claimed.add(best);
+        }
+    }
+
+    public List<Map<String, Object>> summary() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Track track : tracks) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", track.id);
+            entry.put("class", track.label);
+            entry.put("first_frame", track.firstFrame);
+            entry.put("last_frame", track.lastFrame);
+            entry.put("frames", track.frames);
+            entry.put("max_confidence", track.maxConfidence);
+            entry.put("last_bbox", track.lastBox);
+            result.add(entry);
+        }
+        return result;
+    }
+
+    static double iou(double[] a, double[] b) {
+        double width = Math.min(a[2], b[2]) - Math.max(a[0], b[0]);
+        double height = Math.min(a[3], b[3]) - Math.max(a[1], b[1]);
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+        double intersection = width * height;
+        double union = (a[2] - a[0]) * (a[3] - a[1]) + (b[2] - b[0]) * (b[3] - b[1]) - intersection;
+        return union <= 0 ? 0 : intersection / union;
+    }
+
+    private static double[] toBox(JsonNode bbox) {
+        return new double[] {
+                bbox.path(0).asDouble(), bbox.path(1).asDouble(),
+                bbox.path(2).asDouble(), bbox.path(3).asDouble() };
+    }
+
+    private static class Track {
+        final int id;
+        final String label;
+        final int firstFrame;
+        int lastFrame;
+        int frames;
+        double maxConfidence;
+        double[] lastBox;
+
+        Track(int id, String label, int firstFrame) {
+            this.id = id;
+            this.label = label;
+            this.firstFrame = firstFrame;
+        }
+
+        void add(int frameIndex, double[] box, double confidence) {
+            lastFrame = frameIndex;
+            lastBox = box;
+            frames++;
+            maxConfidence = Math.max(maxConfidence, confidence);
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package com.rana.backend.service;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Node;
+
+// turns an animated GIF or a short video into sampled still frames on disk.
+// GIFs are decoded and composited with ImageIO; videos are decoded by ffmpeg,
+// which streams BMP frames back to us over a pipe
+@Component
+public class FrameDecoder {
+    private static final Logger logger = LoggerFactory.getLogger(FrameDecoder.class);
+
+    // browsers treat tiny GIF delays as 100ms, so do we
+    private static final int MIN_GIF_DELAY_MS = 20;
+    private static final int DEFAULT_GIF_DELAY_MS = 100;
+
+    @Value("${animation.ffmpeg-path:ffmpeg}")
+    private String ffmpegPath;
+
+    @Value("${animation.ffprobe-path:ffprobe}")
+    private String ffprobePath;
+
+    // a tiny crafted GIF can declare a 65535x65535 screen, so sizes are checked before
+    // anything is allocated
+    @Value("${animation.max-canvas-pixels:4000000}")
+    private long maxCanvasPixels;
+
+    // frames are decoded for compositing even when they are not sampled
+    @Value("${animation.max-decoded-frames:1000}")
+    private int maxDecodedFrames;
+
+    public interface FrameSink {
+        void accept(int index, long timestampMs, Path frame) throws IOException;
+    }
+
+    public static boolean isSupported(String contentType) {
+        return contentType != null
+                && (contentType.equals("image/gif") || contentType.startsWith("video/"));
+    }
+
+    // number of frames decode will emit, read from GIF metadata or the video duration
+    // without decoding any pixels; rejects GIFs over the canvas or frame limits
+    public int estimateFrames(Path media, String contentType, double fps, int maxFrames) throws IOException {
+        if ("image/gif".equals(contentType)) {
+            return Math.min(maxFrames, estimateGifFrames(media, fps));
+        }
+        Double durationSeconds = probeVideoDuration(media);
+        if (durationSeconds == null) {
+            return maxFrames;
+        }
+        return (int) Math.max(1, Math.min(maxFrames, Math.ceil(durationSeconds * fps)));
+    }
+
+    // emits at most maxFrames frames, roughly fps per second of playback, and stops
+    // as soon as stopRequested returns true
+    public int decode(Path media, String contentType, double fps, int maxFrames, Path workDir,
+            FrameSink sink, BooleanSupplier stopRequested) throws IOException {
+        if ("image/gif".equals(contentType)) {
+            return decodeGif(media, fps, maxFrames, workDir, sink, stopRequested);
+        }
+        if (contentType != null && contentType.startsWith("video/")) {
+            return decodeVideo(media, fps, maxFrames, workDir, sink, stopRequested);
+        }
+        throw new IOException("Unsupported media type: " + contentType);
+    }
+
+    private int decodeGif(Path media, double fps, int maxFrames, Path workDir,
+            FrameSink sink, BooleanSupplier stopRequested) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(media.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("gif");
+            if (stream == null || !readers.hasNext()) {
+                throw new IOException("No GIF decoder available");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, false);
+                BufferedImage canvas = null;
+                double intervalMs = 1000.0 / fps;
+                double nextSampleMs = 0;
+                long frameStartMs = 0;
+                int emitted = 0;
+
+                for (int i = 0; emitted < maxFrames && !stopRequested.getAsBoolean(); i++) {
+                    BufferedImage raw;
+                    try {
+                        checkGifFrame(reader, i);
+                        raw = reader.read(i);
+                    } catch (IndexOutOfBoundsException e) {
+                        break;
+                    }
+                    GifFrameInfo info = GifFrameInfo.read(reader.getImageMetadata(i));
+                    if (canvas == null) {
+                        canvas = createCanvas(reader, raw);
+                    }
+
+                    BufferedImage previous = "restoreToPrevious".equals(info.disposal) ? copy(canvas) : null;
+                    Graphics2D g = canvas.createGraphics();
+                    g.drawImage(raw, info.left, info.top, null);
+                    g.dispose();
+
+                    long frameEndMs = frameStartMs + info.delayMs;
+                    if (nextSampleMs < frameEndMs) {
+                        sink.accept(emitted, frameStartMs, writeFrame(toRgb(canvas), workDir, emitted));
+                        emitted++;
+                        while (nextSampleMs < frameEndMs) {
+                            nextSampleMs += intervalMs;
+                        }
+                    }
+                    frameStartMs = frameEndMs;
+
+                    // dispose of this frame before the next one is drawn
+                    if ("restoreToBackgroundColor".equals(info.disposal)) {
+                        Graphics2D clear = canvas.createGraphics();
+                        clear.setComposite(AlphaComposite.Clear);
+                        clear.fillRect(info.left, info.top, raw.getWidth(), raw.getHeight());
+                        clear.dispose();
+                    } else if (previous != null) {
+                        canvas = previous;
+                    }
+                }
+                return emitted;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private int estimateGifFrames(Path media, double fps) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(media.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("gif");
+            if (stream == null || !readers.hasNext()) {
+                throw new IOException("No GIF decoder available");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, false);
+                checkCanvas(logicalScreen(reader));
+                double intervalMs = 1000.0 / fps;
+                double nextSampleMs = 0;
+                long frameStartMs = 0;
+                int samples = 0;
+                for (int i = 0; ; i++) {
+                    try {
+                        checkGifFrame(reader, i);
+                    } catch (IndexOutOfBoundsException e) {
+                        break;
+                    }
+                    // same sampling as decodeGif, on the frame delays only
+                    long frameEndMs = frameStartMs + GifFrameInfo.read(reader.getImageMetadata(i)).delayMs;
+                    if (nextSampleMs < frameEndMs) {
+                        samples++;
+                        while (nextSampleMs < frameEndMs) {
+                            nextSampleMs += intervalMs;
+                        }
+                    }
+                    frameStartMs = frameEndMs;
+                }
+                return samples;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // throws IndexOutOfBoundsException past the last frame, like ImageReader.read
+    private void checkGifFrame(ImageReader reader, int index) throws IOException {
+        if (index >= maxDecodedFrames) {
+            // only an error if that frame actually exists
+            reader.getWidth(index);
+            throw new MediaTooLargeException("Animation has more than " + maxDecodedFrames + " frames");
+        }
+        checkCanvas(new int[] { reader.getWidth(index), reader.getHeight(index) });
+    }
+
+    private void checkCanvas(int[] size) {
+        if ((long) size[0] * size[1] > maxCanvasPixels) {
+            throw new MediaTooLargeException(String.format("Animation frames of %dx%d exceed the limit of %d pixels",
+                    size[0], size[1], maxCanvasPixels));
+        }
+    }
+
+    // null when ffprobe is missing or cannot tell
+    private Double probeVideoDuration(Path media) {
+        ProcessBuilder pb = new ProcessBuilder(List.of(
+                ffprobePath, "-v", "error",
+                "-show_entries", "format=duration",
+                "-of", "default=noprint_wrappers=1:nokey=1",
+                media.toString()));
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        try {
+            Process process = pb.start();
+            String output = new String(process.getInputStream().readAllBytes()).trim();
+            if (!process.waitFor(10, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                process.destroyForcibly();
+                return null;
+            }
+            double duration = Double.parseDouble(output);
+            return duration > 0 ? duration : null;
+        } catch (IOException | NumberFormatException e) {
+            logger.debug("Could not probe video duration: {}", e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private int decodeVideo(Path media, double fps, int maxFrames, Path workDir,
+            FrameSink sink, BooleanSupplier stopRequested) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(List.of(
+                ffmpegPath, "-v", "error", "-nostdin",
+                "-i", media.toString(),
+                "-vf", videoFilter(fps),
+                "-frames:v", String.valueOf(maxFrames),
+                "-f", "image2pipe", "-vcodec", "bmp", "-"));
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+
+        Process process;
+        try {
+            process = pb.start();
+        } catch (IOException e) {
+            throw new IOException("Video decoding requires ffmpeg at '" + ffmpegPath + "'", e);
+        }
+
+        int emitted = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(process.getInputStream()))) {
+            byte[] bmp;
+            while (emitted < maxFrames && !stopRequested.getAsBoolean() && (bmp = readBmp(in)) != null) {
+                Path frame = workDir.resolve(String.format("frame-%05d.bmp", emitted));
+                Files.write(frame, bmp);
+                sink.accept(emitted, Math.round(emitted * 1000.0 / fps), frame);
+                emitted++;
+            }
+        } finally {
+            process.destroy();
+        }
+        if (emitted == 0) {
+            throw new IOException("No frames could be decoded from the video");
+        }
+        return emitted;
+    }
+
+    // phone videos are 4K and more, so ffmpeg scales every frame down into a square box
+    // whose area is the canvas limit, keeping the aspect ratio
+    String videoFilter(double fps) {
+        long side = Math.max(2, (long) Math.sqrt(maxCanvasPixels));
+        return String.format(Locale.ROOT,
+                "fps=%s,scale=w='min(iw,%d)':h='min(ih,%d)':force_original_aspect_ratio=decrease",
+                fps, side, side);
+    }
+
+    // a BMP file carries its own length in the header, which lets us split the pipe
+    private byte[] readBmp(DataInputStream in) throws IOException {
+        byte[] header = new byte[14];
+        try {
+            in.readFully(header);
+        } catch (EOFException e) {
+            return null;
+        }
+        if (header[0] != 'B' || header[1] != 'M') {
+            throw new IOException("Unexpected data in ffmpeg output");
+        }
+        long size = (header[2] & 0xffL) | (header[3] & 0xffL) << 8 | (header[4] & 0xffL) << 16 | (header[5] & 0xffL) << 24;
+        if (size <= header.length) {
+            throw new IOException("Invalid frame size in ffmpeg output: " + size);
+        }
+        // 32 bit pixels plus headers is the most a frame within the limit can take
+        if (size > maxCanvasPixels * 4 + 1024) {
+            throw new MediaTooLargeException("Video frames exceed the limit of " + maxCanvasPixels + " pixels");
+        }
+        byte[] frame = new byte[(int) size];
+        System.arraycopy(header, 0, frame, 0, header.length);
+        in.readFully(frame, header.length, frame.length - header.length);
+        return frame;
+    }
+
+    private BufferedImage createCanvas(ImageReader reader, BufferedImage firstFrame) throws IOException {
+        int[] screen = logicalScreen(reader);
+        int[] size = { Math.max(firstFrame.getWidth(), screen[0]), Math.max(firstFrame.getHeight(), screen[1]) };
+        checkCanvas(size);
+        return new BufferedImage(size[0], size[1], BufferedImage.TYPE_INT_ARGB);
+    }
+
+    // declared screen size, 0x0 when the stream does not say
+    private static int[] logicalScreen(ImageReader reader) throws IOException {
+        IIOMetadata streamMetadata = reader.getStreamMetadata();
+        if (streamMetadata != null) {
+            Node screen = findChild(streamMetadata.getAsTree("javax_imageio_gif_stream_1.0"), "LogicalScreenDescriptor");
+            if (screen != null) {
+                return new int[] { intAttribute(screen, "logicalScreenWidth", 0), intAttribute(screen, "logicalScreenHeight", 0) };
+            }
+        }
+        return new int[] { 0, 0 };
+    }
+
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        Graphics2D g = copy.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return copy;
+    }
+
+    private static BufferedImage toRgb(BufferedImage image) {
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.drawImage(image, 0, 0, Color.WHITE, null);
+        g.dispose();
+        return rgb;
+    }
+
+    // BMP is uncompressed and therefore the cheapest format to hand over to the analyzer
+    private static Path writeFrame(BufferedImage frame, Path workDir, int index) throws IOException {
+        Path file = workDir.resolve(String.format("frame-%05d.bmp", index));
+        if (!ImageIO.write(frame, "bmp", file.toFile())) {
+            throw new IOException("No BMP encoder available");
+        }
+        return file;
+    }
+
+    private static Node findChild(Node parent, String name) {
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (name.equals(child.getNodeName())) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static int intAttribute(Node node, String name, int fallback) {
+        Node attribute = node.getAttributes().getNamedItem(name);
+        if (attribute == null) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(attribute.getNodeValue());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static class GifFrameInfo {
+        int left;
+        int top;
+        long delayMs = DEFAULT_GIF_DELAY_MS;
+        String disposal = "none";
+
+        static GifFrameInfo read(IIOMetadata metadata) {
+            GifFrameInfo info = new GifFrameInfo();
+            Node root = metadata.getAsTree("javax_imageio_gif_image_1.0");
+            Node descriptor = findChild(root, "ImageDescriptor");
+            if (descriptor != null) {
+                info.left = intAttribute(descriptor, "imageLeftPosition", 0);
+                info.top = intAttribute(descriptor, "imageTopPosition", 0);
+            }
+            Node control = findChild(root, "GraphicControlExtension");
+            if (control != null) {
+                // delay is stored in hundredths of a second
+                long delay = intAttribute(control, "delayTime", 0) * 10L;
+                info.delayMs = delay < MIN_GIF_DELAY_MS ? DEFAULT_GIF_DELAY_MS : delay;
+                Node disposal = control.getAttributes().getNamedItem("disposalMethod");
+                if (disposal != null) {
+                    info.disposal = disposal.getNodeValue();
+                }
+            }
+            logger.trace("GIF frame at {},{} delay {}ms disposal {}", info.left, info.top, info.delayMs, info.disposal);
+            return info;
+        }
+    }
+}
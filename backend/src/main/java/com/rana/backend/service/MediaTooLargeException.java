@@ -0,0 +1,9 @@
+package com.rana.backend.service;
+
+// an upload whose decoded size (pixels, frames, tiles) is over a configured limit;
+// controllers answer 413
+public class MediaTooLargeException extends IllegalArgumentException {
+    public MediaTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,167 @@
+package com.rana.backend.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// bounded LRU store of analysis results keyed by perceptual hash, searchable by
+// Hamming distance. uses multi-index hashing: the 64 bit hash is cut into
+// maxDistance + 1 chunks, and by the pigeonhole principle any hash within
+// maxDistance bits matches at least one chunk exactly, so only those buckets
+// have to be compared
+@Component
+public class NearDuplicateIndex {
+
+    private final int maxDistance;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final boolean shareAcrossUsers;
+    private final int chunks;
+
+    // all fields below are guarded by this
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final LinkedHashSet<Long> recency = new LinkedHashSet<>();
+    private final List<Map<Long, Set<Long>>> chunkIndex = new ArrayList<>();
+    private long nextId;
+    private long storedBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer lookupTimer;
+
+    public NearDuplicateIndex(
+            MeterRegistry meterRegistry,
+            @Value("${dedup.max-distance:4}") int maxDistance,
+            @Value("${dedup.max-entries:500}") int maxEntries,
+            @Value("${dedup.max-megabytes:64}") long maxMegabytes,
+            @Value("${dedup.share-across-users:false}") boolean shareAcrossUsers) {
+        this.maxDistance = Math.max(0, Math.min(maxDistance, 15));
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = maxMegabytes * 1024 * 1024;
+        this.shareAcrossUsers = shareAcrossUsers;
+        this.chunks = this.maxDistance + 1;
+        for (int i = 0; i < chunks; i++) {
+            chunkIndex.add(new HashMap<>());
+        }
+
+        this.hits = Counter.builder("analysis.dedup.lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("analysis.dedup.lookups").tag("result", "miss").register(meterRegistry);
+        this.lookupTimer = Timer.builder("analysis.dedup.lookup.latency")
+                .description("Time spent searching the near-duplicate index")
+                .register(meterRegistry);
+        meterRegistry.gauge("analysis.dedup.entries", this, NearDuplicateIndex::size);
+        meterRegistry.gauge("analysis.dedup.hit.ratio", this, index -> {
+            double total = index.hits.count() + index.misses.count();
+            return total == 0 ? 0 : index.hits.count() / total;
+        });
+    }
+
+    public record Match(String resultJson, int width, int height, int distance) {
+    }
+
+    // closest stored result within maxDistance bits, or null
+    public Match find(String owner, long hash) {
+        long start = System.nanoTime();
+        Match match;
+        synchronized (this) {
+            match = findLocked(owner, hash);
+        }
+        lookupTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        (match != null ? hits : misses).increment();
+        return match;
+    }
+
+    public synchronized void put(String owner, PerceptualHash.Fingerprint fingerprint, String resultJson) {
+        long size = 2L * resultJson.length();
+        if (size > maxBytes) {
+            return;
+        }
+        long id = nextId++;
+        entries.put(id, new Entry(owner, fingerprint.hash(), fingerprint.width(), fingerprint.height(), resultJson, size));
+        recency.add(id);
+        storedBytes += size;
+        for (int i = 0; i < chunks; i++) {
+            chunkIndex.get(i).computeIfAbsent(chunk(fingerprint.hash(), i), k -> new HashSet<>()).add(id);
+        }
+        evict();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private Match findLocked(String owner, long hash) {
+        Long bestId = null;
+        int bestDistance = maxDistance + 1;
+        for (int i = 0; i < chunks; i++) {
+            Set<Long> candidates = chunkIndex.get(i).get(chunk(hash, i));
+            if (candidates == null) {
+                continue;
+            }
+            for (Long id : candidates) {
+                Entry entry = entries.get(id);
+                if (!shareAcrossUsers && !entry.owner.equals(owner)) {
+                    continue;
+                }
+                int distance = PerceptualHash.distance(hash, entry.hash);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    bestId = id;
+                }
+            }
+        }
+        if (bestId == null) {
+            return null;
+        }
+        // move the entry to the most recently used end
+        recency.remove(bestId);
+        recency.add(bestId);
+        Entry best = entries.get(bestId);
+        return new Match(best.resultJson, best.width, best.height, bestDistance);
+    }
+
+    // least recently used entries go first
+    private void evict() {
+        Iterator<Long> iterator = recency.iterator();
+        while ((entries.size() > maxEntries || storedBytes > maxBytes) && iterator.hasNext()) {
+            Long eldestId = iterator.next();
+            iterator.remove();
+            Entry eldest = entries.remove(eldestId);
+            storedBytes -= eldest.size;
+            for (int i = 0; i < chunks; i++) {
+                long key = chunk(eldest.hash, i);
+                Set<Long> bucket = chunkIndex.get(i).get(key);
+                if (bucket != null) {
+                    bucket.remove(eldestId);
+                    if (bucket.isEmpty()) {
+                        chunkIndex.get(i).remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    // chunk i covers bits [i * 64 / chunks, (i + 1) * 64 / chunks)
+    private long chunk(long hash, int index) {
+        int from = index * 64 / chunks;
+        int bits = (index + 1) * 64 / chunks - from;
+        long mask = bits == 64 ? -1L : (1L << bits) - 1;
+        return (hash >>> from) & mask;
+    }
+
+    private record Entry(String owner, long hash, int width, int height, String resultJson, long size) {
+    }
+}
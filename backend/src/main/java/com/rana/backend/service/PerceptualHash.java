@@ -0,0 +1,78 @@
+package com.rana.backend.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.imgscalr.Scalr;
+
+// 64 bit difference hash (dHash): the image is shrunk to 9x8 grey pixels and every bit
+// says whether a pixel is brighter than its right neighbour. recompressed, resized or
+// screenshotted copies of a photo end up within a few bits of each other
+public final class PerceptualHash {
+
+    // large photos are subsampled while decoding, the hash only needs a thumbnail
+    private static final int DECODE_TARGET_SIZE = 128;
+
+    private PerceptualHash() {
+    }
+
+    public record Fingerprint(long hash, int width, int height) {
+    }
+
+    // null when ImageIO cannot decode the image
+    public static Fingerprint of(byte[] imageData) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(imageData))) {
+            Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.min(width, height) / DECODE_TARGET_SIZE);
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage thumbnail = reader.read(0, param);
+                return new Fingerprint(dHash(thumbnail), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    static long dHash(BufferedImage image) {
+        BufferedImage small = Scalr.resize(image, Scalr.Method.QUALITY, Scalr.Mode.FIT_EXACT, 9, 8);
+        long hash = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                hash <<= 1;
+                if (luminance(small.getRGB(x, y)) > luminance(small.getRGB(x + 1, y))) {
+                    hash |= 1;
+                }
+            }
+        }
+        small.flush();
+        return hash;
+    }
+
+    private static int luminance(int rgb) {
+        int r = (rgb >> 16) & 0xff;
+        int g = (rgb >> 8) & 0xff;
+        int b = rgb & 0xff;
+        return (299 * r + 587 * g + 114 * b) / 1000;
+    }
+}
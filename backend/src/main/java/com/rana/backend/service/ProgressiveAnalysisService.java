@@ -0,0 +1,168 @@
+package com.rana.backend.service;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// streaming variant of the analysis: every stage (classification, detections,
+// detection image, segmentation) is passed on as soon as the analyzer finishes it.
+// time to the first stage and to the final record are recorded as metrics
+@Service
+public class ProgressiveAnalysisService {
+    private static final Logger logger = LoggerFactory.getLogger(ProgressiveAnalysisService.class);
+
+    private final PythonService pythonService;
+    private final AnalysisScheduler analysisScheduler;
+    private final ResultReuseService resultReuseService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Timer timeToFirstResult;
+    private final Timer timeToDone;
+
+    public interface StageListener {
+        void onStage(String stage, JsonNode record);
+    }
+
+    public ProgressiveAnalysisService(PythonService pythonService, AnalysisScheduler analysisScheduler,
+            ResultReuseService resultReuseService, MeterRegistry meterRegistry) {
+        this.pythonService = pythonService;
+        this.analysisScheduler = analysisScheduler;
+        this.resultReuseService = resultReuseService;
+        this.timeToFirstResult = Timer.builder("analysis.stream.time.to.first.result")
+                .description("Time from request to the first streamed analysis stage")
+                .register(meterRegistry);
+        this.timeToDone = Timer.builder("analysis.stream.time.to.done")
+                .description("Time from request to the final streamed analysis record")
+                .register(meterRegistry);
+    }
+
+    // completes once the final "done" record has been delivered; stages are delivered
+    // on the scheduler worker that runs the analysis
+    public CompletableFuture<Void> analyze(String user, AnalysisPriority priority, byte[] image,
+            long requestStartNanos, StageListener listener) throws IOException {
+        StreamState state = new StreamState(requestStartNanos, listener);
+
+        PerceptualHash.Fingerprint fingerprint = resultReuseService.fingerprint(image);
+        String reusable = resultReuseService.findReusable(user, fingerprint);
+        if (reusable != null) {
+            replay(objectMapper.readTree(reusable), state);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return analysisScheduler.submit(user, priority, () -> {
+            pythonService.analyzeImageProgressive(image, line -> state.forward(parse(line)));
+            if (!state.done) {
+                throw new IOException("Analyzer finished without a final record");
+            }
+            if (state.succeeded) {
+                resultReuseService.remember(user, fingerprint, objectMapper.writeValueAsString(state.assembled));
+            }
+            return null;
+        });
+    }
+
+    // a near-duplicate was analyzed before, send its stages right away
+    private void replay(JsonNode result, StreamState state) {
+        ObjectNode classification = objectMapper.createObjectNode();
+        classification.put("classification", result.path("classification").asText("unknown"));
+        state.forward(withStage(classification, "classification"));
+
+        ObjectNode detections = objectMapper.createObjectNode();
+        detections.set("detections", result.path("detections"));
+        detections.put("pets_detected", result.path("metadata").path("pets_detected").asBoolean());
+        state.forward(withStage(detections, "detections"));
+
+        JsonNode visualizations = result.path("visualizations");
+        if (visualizations.hasNonNull("detection")) {
+            ObjectNode detectionImage = objectMapper.createObjectNode();
+            detectionImage.set("detection", visualizations.get("detection"));
+            state.forward(withStage(detectionImage, "detection_image"));
+        }
+        if (visualizations.hasNonNull("segmentation")) {
+            ObjectNode segmentation = objectMapper.createObjectNode();
+            segmentation.set("segmentation", visualizations.get("segmentation"));
+            state.forward(withStage(segmentation, "segmentation"));
+        }
+
+        ObjectNode done = ((ObjectNode) result.deepCopy()).without("visualizations");
+        state.forward(withStage(done, "done"));
+    }
+
+    private ObjectNode parse(String line) {
+        try {
+            return (ObjectNode) objectMapper.readTree(line);
+        } catch (IOException | ClassCastException e) {
+            logger.warn("Ignoring malformed analyzer record: {}", line);
+            return null;
+        }
+    }
+
+    private static ObjectNode withStage(ObjectNode record, String stage) {
+        record.put("stage", stage);
+        return record;
+    }
+
+    private class StreamState {
+        final long startNanos;
+        final StageListener listener;
+        // the full result rebuilt from the stage records, for the near-duplicate index
+        final ObjectNode assembled = objectMapper.createObjectNode();
+        boolean firstSent;
+        boolean done;
+        boolean succeeded;
+
+        StreamState(long startNanos, StageListener listener) {
+            this.startNanos = startNanos;
+            this.listener = listener;
+            assembled.putObject("visualizations");
+        }
+
+        void forward(ObjectNode record) {
+            if (record == null) {
+                return;
+            }
+            // model loading failures come back as a bare error record
+            String stage = record.path("stage").asText(record.has("success") ? "done" : "unknown");
+            long elapsedNanos = System.nanoTime() - startNanos;
+            record.put("elapsed_ms", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+
+            if (!firstSent) {
+                firstSent = true;
+                timeToFirstResult.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            }
+            if ("done".equals(stage)) {
+                done = true;
+                succeeded = record.path("success").asBoolean();
+                timeToDone.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            }
+            assemble(stage, record);
+            listener.onStage(stage, record);
+        }
+
+        void assemble(String stage, JsonNode record) {
+            ObjectNode visualizations = (ObjectNode) assembled.get("visualizations");
+            switch (stage) {
+                case "classification" -> assembled.set("classification", record.get("classification"));
+                case "detections" -> assembled.set("detections", record.get("detections"));
+                case "detection_image" -> visualizations.set("detection", record.get("detection"));
+                case "segmentation" -> visualizations.set("segmentation", record.get("segmentation"));
+                case "done" -> {
+                    assembled.set("success", record.get("success"));
+                    assembled.set("metadata", record.get("metadata"));
+                }
+                default -> {
+                }
+            }
+        }
+    }
+}
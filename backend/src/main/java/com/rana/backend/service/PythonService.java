@@ -2,6 +2,7 @@ package com.rana.backend.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -15,7 +16,11 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 
 @Service
@@ -31,8 +36,12 @@ public class PythonService {
     @Value("${python.timeout:60}")
     private int timeoutSeconds;
 
+    @Autowired
+    private AnalyzerResources analyzerResources;
+
     public String analyzeImage(MultipartFile image) throws IOException {
         Path tempImage = null;
+        AnalyzerResources.Slot slot = null;
         try {
             // 1. Create temp file with validation
             tempImage = createTempImageFile(image);
@@ -41,9 +50,11 @@ public class PythonService {
             // 2. Get absolute script path with validation
             String scriptPath = getValidatedScriptPath();
 
-            // 3. Build and execute process
+            // 3. Build and execute process on a free slot of CPUs
+            slot = analyzerResources.acquire();
             ProcessBuilder pb = buildProcess(scriptPath, tempImage);
-            logger.info("Process command: {}", pb.command());
+            slot.applyTo(pb.environment());
+            logger.info("Process command: {} (slot {}, cpus {})", pb.command(), slot.index(), slot.cpus());
 
             // 4. Execute with full error capture
             Process process = pb.start();
@@ -60,10 +71,120 @@ public class PythonService {
             logger.error("Processing failed: {}", e.getMessage());
             throw new IOException("Image processing failed: " + e.getMessage(), e);
         } finally {
+            analyzerResources.release(slot);
             cleanupTempFile(tempImage);
         }
     }
 
+    // runs the analyzer in --progressive mode and hands every stage record to onRecord
+    // as soon as the script prints it, instead of buffering the whole output
+    public void analyzeImageProgressive(byte[] image, Consumer<String> onRecord) throws IOException {
+        Path tempImage = null;
+        AnalyzerResources.Slot slot = null;
+        try {
+            tempImage = Files.createTempFile("pet-", ".jpg");
+            Files.write(tempImage, image);
+
+            slot = analyzerResources.acquire();
+            ProcessBuilder pb = buildProcess(getValidatedScriptPath(), tempImage);
+            pb.command().add("--progressive");
+            slot.applyTo(pb.environment());
+            logger.info("Process command: {} (slot {}, cpus {})", pb.command(), slot.index(), slot.cpus());
+
+            Process process = pb.start();
+            CompletableFuture.delayedExecutor(timeoutSeconds, TimeUnit.SECONDS).execute(() -> {
+                if (process.isAlive()) {
+                    logger.warn("Progressive analysis timed out after {} seconds", timeoutSeconds);
+                    process.destroyForcibly();
+                }
+            });
+
+            StringBuilder otherOutput = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("{")) {
+                        onRecord.accept(line);
+                    } else {
+                        otherOutput.append(line).append("\n");
+                        logger.debug("PYTHON> {}", line);
+                    }
+                }
+            }
+
+            if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new RuntimeException(
+                        "Process timed out after " + timeoutSeconds + " seconds");
+            }
+            if (process.exitValue() != 0) {
+                throw new RuntimeException(String.format(
+                        "Python script failed with exit code %d. Output: %s",
+                        process.exitValue(), otherOutput));
+            }
+        } catch (Exception e) {
+            logger.error("Processing failed: {}", e.getMessage());
+            throw new IOException("Image processing failed: " + e.getMessage(), e);
+        } finally {
+            analyzerResources.release(slot);
+            cleanupTempFile(tempImage);
+        }
+    }
+
+    // starts the analyzer in --stream mode so many images can share one model load;
+    // the session holds an analyzer slot until it is closed
+    public AnalyzerSession openSession(String... options) throws IOException {
+        AnalyzerResources.Slot slot;
+        try {
+            slot = analyzerResources.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a free analyzer", e);
+        }
+        try {
+            return openSession(slot, () -> analyzerResources.release(slot), options);
+        } catch (IOException | RuntimeException e) {
+            analyzerResources.release(slot);
+            throw e;
+        }
+    }
+
+    // like openSession, but returns null instead of waiting when every analyzer slot is busy
+    public AnalyzerSession tryOpenSession(String... options) throws IOException {
+        AnalyzerResources.Slot slot = analyzerResources.tryAcquire();
+        if (slot == null) {
+            return null;
+        }
+        try {
+            return openSession(slot, () -> analyzerResources.release(slot), options);
+        } catch (IOException | RuntimeException e) {
+            analyzerResources.release(slot);
+            throw e;
+        }
+    }
+
+    // runs on the given slot without taking it from the shared pool (used for benchmarks);
+    // the process is killed if the session is still open after the python timeout
+    public AnalyzerSession openSession(AnalyzerResources.Slot slot, Runnable onClose, String... options)
+            throws IOException {
+        List<String> command = new ArrayList<>(List.of(pythonPath, getValidatedScriptPath(), "--stream"));
+        command.addAll(List.of(options));
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+        slot.applyTo(pb.environment());
+        logger.info("Session command: {} (slot {}, cpus {})", pb.command(), slot.index(), slot.cpus());
+
+        Process process = pb.start();
+        CompletableFuture.delayedExecutor(timeoutSeconds, TimeUnit.SECONDS).execute(() -> {
+            if (process.isAlive()) {
+                logger.warn("Analyzer session timed out after {} seconds", timeoutSeconds);
+                process.destroyForcibly();
+            }
+        });
+        return new AnalyzerSession(process, onClose);
+    }
+
     private Path createTempImageFile(MultipartFile image) throws IOException {
         Path tempFile = Files.createTempFile("pet-", ".jpg");
         try {
@@ -0,0 +1,158 @@
+package com.rana.backend.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+import javax.imageio.ImageIO;
+
+import org.imgscalr.Scalr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+// reuses the analysis of a near-duplicate upload (same photo recompressed, resized or
+// screenshotted) instead of running the models again
+@Service
+public class ResultReuseService {
+    private static final Logger logger = LoggerFactory.getLogger(ResultReuseService.class);
+
+    // analyze.py downscales anything above this before detection, boxes are in that frame
+    private static final double ANALYZER_MAX_PIXELS = 10_000_000;
+
+    private final NearDuplicateIndex index;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${dedup.enabled:true}")
+    private boolean enabled;
+
+    public ResultReuseService(NearDuplicateIndex index) {
+        this.index = index;
+    }
+
+    public PerceptualHash.Fingerprint fingerprint(MultipartFile image) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            return fingerprint(image.getBytes());
+        } catch (IOException e) {
+            logger.debug("Could not read upload for hashing: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // null when reuse is disabled or the image cannot be decoded in Java
+    public PerceptualHash.Fingerprint fingerprint(byte[] image) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            return PerceptualHash.of(image);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not compute perceptual hash: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // stored result of a near-duplicate, rescaled to this image's size, or null
+    public String findReusable(String user, PerceptualHash.Fingerprint fingerprint) throws IOException {
+        if (fingerprint == null) {
+            return null;
+        }
+        NearDuplicateIndex.Match match = index.find(user, fingerprint.hash());
+        if (match == null) {
+            return null;
+        }
+        try {
+            String result = rescale(match, fingerprint.width(), fingerprint.height());
+            logger.info("Reusing analysis of a near-duplicate image (distance {})", match.distance());
+            return result;
+        } catch (IOException e) {
+            // a stored visualization that cannot be scaled is treated as a miss
+            logger.warn("Could not rescale near-duplicate result, analyzing again: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public void remember(String user, PerceptualHash.Fingerprint fingerprint, String resultJson) {
+        if (fingerprint != null) {
+            index.put(user, fingerprint, resultJson);
+        }
+    }
+
+    private String rescale(NearDuplicateIndex.Match match, int width, int height) throws IOException {
+        ObjectNode result = (ObjectNode) objectMapper.readTree(match.resultJson());
+        double[] from = analyzerFrame(match.width(), match.height());
+        double[] to = analyzerFrame(width, height);
+        double scaleX = to[0] / from[0];
+        double scaleY = to[1] / from[1];
+
+        for (JsonNode detection : result.path("detections")) {
+            if (detection.path("bbox") instanceof ArrayNode bbox && bbox.size() == 4) {
+                for (int i = 0; i < 4; i++) {
+                    double scale = i % 2 == 0 ? scaleX : scaleY;
+                    bbox.set(i, Math.round(bbox.get(i).asDouble() * scale * 100) / 100.0);
+                }
+            }
+        }
+
+        // the stored detection / segmentation images are in the earlier upload's analyzer
+        // frame, so they are scaled like the boxes to keep both lined up
+        int toWidth = (int) to[0];
+        int toHeight = (int) to[1];
+        boolean resized = from[0] != to[0] || from[1] != to[1];
+        if (resized && result.path("visualizations") instanceof ObjectNode visualizations) {
+            for (String name : new String[] { "detection", "segmentation" }) {
+                String png = visualizations.path(name).asText("");
+                if (!png.isEmpty()) {
+                    visualizations.put(name, scalePng(png, toWidth, toHeight));
+                }
+            }
+        }
+
+        if (result.path("metadata") instanceof ObjectNode metadata) {
+            metadata.put("image_width", width);
+            metadata.put("image_height", height);
+            metadata.put("reused", true);
+            metadata.put("hash_distance", match.distance());
+        }
+        return objectMapper.writeValueAsString(result);
+    }
+
+    private static String scalePng(String base64Png, int width, int height) throws IOException {
+        BufferedImage image;
+        try {
+            image = ImageIO.read(new ByteArrayInputStream(Base64.getDecoder().decode(base64Png)));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Stored visualization is not valid base64", e);
+        }
+        if (image == null) {
+            throw new IOException("Stored visualization is not a readable image");
+        }
+        BufferedImage scaled = Scalr.resize(image, Scalr.Method.AUTOMATIC, Scalr.Mode.FIT_EXACT, width, height);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(scaled, "png", png);
+        return Base64.getEncoder().encodeToString(png.toByteArray());
+    }
+
+    // size of the image the analyzer actually ran detection on
+    private static double[] analyzerFrame(int width, int height) {
+        double pixels = (double) width * height;
+        if (pixels <= ANALYZER_MAX_PIXELS) {
+            return new double[] { width, height };
+        }
+        double ratio = Math.sqrt(ANALYZER_MAX_PIXELS / pixels);
+        return new double[] { (int) (width * ratio), (int) (height * ratio) };
+    }
+}
@@ -0,0 +1,325 @@
+package com.rana.backend.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+
+// detection on very large images: the full resolution image is cut into overlapping
+// tiles, the tiles are spread over several detection-only analyzer sessions, and the
+// boxes are merged back with cross-tile non-maximum suppression
+@Service
+public class TiledDetectionService {
+    private static final Logger logger = LoggerFactory.getLogger(TiledDetectionService.class);
+
+    private final PythonService pythonService;
+    private final AnalyzerResources analyzerResources;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger laneThreads = new AtomicInteger();
+    private final ExecutorService laneExecutor = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "tile-lane-" + laneThreads.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${tiling.tile-size:1024}")
+    private int tileSize;
+
+    @Value("${tiling.overlap:128}")
+    private int overlap;
+
+    @Value("${tiling.parallelism:0}")
+    private int parallelism;
+
+    @Value("${tiling.nms-iou:0.5}")
+    private double nmsIou;
+
+    @Value("${tiling.nms-containment:0.8}")
+    private double nmsContainment;
+
+    // the whole image is decoded in memory before it is cut
+    @Value("${tiling.max-pixels:40000000}")
+    private long maxPixels;
+
+    public TiledDetectionService(PythonService pythonService, AnalyzerResources analyzerResources) {
+        this.pythonService = pythonService;
+        this.analyzerResources = analyzerResources;
+    }
+
+    public record Detection(String label, double confidence, double[] bbox) {
+    }
+
+    private record Tile(int x, int y, int width, int height) {
+    }
+
+    // number of tiles an image will be split into, read from the image header only;
+    // throws MediaTooLargeException above tiling.max-pixels
+    public int estimateTiles(byte[] imageData) throws IOException {
+        int[] size = checkedSize(imageData);
+        return tileOrigins(size[0]).size() * tileOrigins(size[1]).size();
+    }
+
+    public Map<String, Object> detect(byte[] imageData) throws IOException {
+        long start = System.nanoTime();
+        // a small, highly compressed upload can decode to hundreds of megapixels
+        checkedSize(imageData);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageData));
+        if (image == null) {
+            throw new IOException("Invalid image file");
+        }
+
+        List<Tile> tiles = new ArrayList<>();
+        for (int y : tileOrigins(image.getHeight())) {
+            for (int x : tileOrigins(image.getWidth())) {
+                tiles.add(new Tile(x, y,
+                        Math.min(tileSize, image.getWidth() - x),
+                        Math.min(tileSize, image.getHeight() - y)));
+            }
+        }
+
+        Path workDir = Files.createTempDirectory("pet-tiles-");
+        List<Detection> raw;
+        int lanes;
+        try {
+            List<AnalyzerSession> sessions = openLanes(Math.min(tiles.size(), maxLanes()));
+            lanes = sessions.size();
+            try {
+                raw = runLanes(sessions, image, tiles, workDir);
+            } finally {
+                sessions.forEach(AnalyzerSession::close);
+            }
+        } finally {
+            try (var files = Files.list(workDir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(workDir);
+        }
+
+        List<Detection> merged = nonMaximumSuppression(raw, nmsIou, nmsContainment);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        logger.info("Tiled detection: {} tiles on {} analyzers, {} raw boxes, {} after NMS, {}ms",
+                tiles.size(), lanes, raw.size(), merged.size(), elapsedMs);
+
+        List<Map<String, Object>> detections = new ArrayList<>();
+        for (Detection detection : merged) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("class", detection.label());
+            entry.put("confidence", detection.confidence());
+            entry.put("bbox", detection.bbox());
+            detections.add(entry);
+        }
+
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("image_width", image.getWidth());
+        metadata.put("image_height", image.getHeight());
+        metadata.put("tiles", tiles.size());
+        metadata.put("tile_size", tileSize);
+        metadata.put("overlap", overlap);
+        metadata.put("parallelism", lanes);
+        metadata.put("elapsed_ms", elapsedMs);
+        metadata.put("pets_detected", !merged.isEmpty());
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", true);
+        response.put("detections", detections);
+        response.put("metadata", metadata);
+        return response;
+    }
+
+    private int[] checkedSize(byte[] imageData) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(imageData))) {
+            Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new MediaTooLargeException(String.format("Image of %dx%d exceeds the limit of %d pixels",
+                            width, height, maxPixels));
+                }
+                return new int[] { width, height };
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // start positions along one axis; the last tile is aligned with the image edge
+    private List<Integer> tileOrigins(int length) {
+        int size = Math.max(1, tileSize);
+        int step = Math.max(1, size - Math.max(0, Math.min(overlap, size - 1)));
+        List<Integer> origins = new ArrayList<>();
+        for (int origin = 0; ; origin += step) {
+            if (origin + size >= length) {
+                origins.add(Math.max(0, length - size));
+                break;
+            }
+            origins.add(origin);
+        }
+        return origins;
+    }
+
+    private int maxLanes() {
+        return parallelism > 0 ? parallelism : analyzerResources.getConcurrency();
+    }
+
+    // the first lane waits for a free analyzer, the others only use analyzers that are
+    // idle right now, so concurrent tiled requests can never deadlock on slots
+    private List<AnalyzerSession> openLanes(int wanted) throws IOException {
+        List<AnalyzerSession> sessions = new ArrayList<>();
+        sessions.add(pythonService.openSession("--detect-only"));
+        try {
+            while (sessions.size() < wanted) {
+                AnalyzerSession session = pythonService.tryOpenSession("--detect-only");
+                if (session == null) {
+                    break;
+                }
+                sessions.add(session);
+            }
+        } catch (IOException | RuntimeException e) {
+            sessions.forEach(AnalyzerSession::close);
+            throw e;
+        }
+        return sessions;
+    }
+
+    // every lane pulls the next tile from a shared queue until it is empty. a tile is only
+    // written to disk when a lane takes it and deleted once analyzed, so at most one tile
+    // file per lane exists at a time
+    private List<Detection> runLanes(List<AnalyzerSession> sessions, BufferedImage image, List<Tile> tiles,
+            Path workDir) throws IOException {
+        ConcurrentLinkedQueue<Tile> queue = new ConcurrentLinkedQueue<>(tiles);
+        List<Detection> detections = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> lanes = new ArrayList<>();
+        for (AnalyzerSession session : sessions) {
+            lanes.add(laneExecutor.submit(() -> {
+                Tile tile;
+                while ((tile = queue.poll()) != null) {
+                    Path file = workDir.resolve(String.format("tile-%d-%d.bmp", tile.x(), tile.y()));
+                    BufferedImage region = toRgb(image.getSubimage(tile.x(), tile.y(), tile.width(), tile.height()));
+                    ImageIO.write(region, "bmp", file.toFile());
+                    session.submit(file);
+                    JsonNode result;
+                    try {
+                        result = objectMapper.readTree(session.nextResult());
+                    } finally {
+                        Files.deleteIfExists(file);
+                    }
+                    if (!result.path("success").asBoolean()) {
+                        throw new IOException("Tile analysis failed: " + result.path("error").asText());
+                    }
+                    for (JsonNode box : result.path("detections")) {
+                        JsonNode bbox = box.path("bbox");
+                        detections.add(new Detection(
+                                box.path("class").asText("unknown"),
+                                box.path("confidence").asDouble(),
+                                new double[] {
+                                        bbox.path(0).asDouble() + tile.x(), bbox.path(1).asDouble() + tile.y(),
+                                        bbox.path(2).asDouble() + tile.x(), bbox.path(3).asDouble() + tile.y() }));
+                    }
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> lane : lanes) {
+                lane.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Tiled detection interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Tiled detection failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            lanes.forEach(lane -> lane.cancel(true));
+        }
+        return detections;
+    }
+
+    // greedy per-class NMS over all tiles. besides plain IoU, a box mostly contained in a
+    // stronger one is dropped too: that is what a pet cut in half by a tile edge looks like
+    static List<Detection> nonMaximumSuppression(List<Detection> detections, double iouThreshold,
+            double containmentThreshold) {
+        List<Detection> sorted = new ArrayList<>(detections);
+        sorted.sort(Comparator.comparingDouble(Detection::confidence).reversed());
+        List<Detection> kept = new ArrayList<>();
+        for (Detection candidate : sorted) {
+            boolean suppressed = false;
+            for (Detection keeper : kept) {
+                if (!keeper.label().equals(candidate.label())) {
+                    continue;
+                }
+                double intersection = intersection(keeper.bbox(), candidate.bbox());
+                double candidateArea = area(candidate.bbox());
+                double union = area(keeper.bbox()) + candidateArea - intersection;
+                if ((union > 0 && intersection / union >= iouThreshold)
+                        || (candidateArea > 0 && intersection / candidateArea >= containmentThreshold)) {
+                    suppressed = true;
+                    break;
+                }
+            }
+            if (!suppressed) {
+                kept.add(candidate);
+            }
+        }
+        return kept;
+    }
+
+    private static double intersection(double[] a, double[] b) {
+        double width = Math.min(a[2], b[2]) - Math.max(a[0], b[0]);
+        double height = Math.min(a[3], b[3]) - Math.max(a[1], b[1]);
+        return width <= 0 || height <= 0 ? 0 : width * height;
+    }
+
+    private static double area(double[] box) {
+        return Math.max(0, box[2] - box[0]) * Math.max(0, box[3] - box[1]);
+    }
+
+    private static BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        rgb.createGraphics().drawImage(image, 0, 0, null);
+        return rgb;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        laneExecutor.shutdownNow();
+    }
+}
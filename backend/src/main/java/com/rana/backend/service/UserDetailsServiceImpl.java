@@ -1,6 +1,10 @@
 package com.rana.backend.service;
 
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -14,15 +18,32 @@ import lombok.RequiredArgsConstructor;
 
 @Service
 @RequiredArgsConstructor
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
     private final UserRepo userRepository;
 
+    // comma separated, these users may read /actuator endpoints other than health
+    @Value("${app.admin-emails:}")
+    private Set<String> adminEmails;
+
     @Override
     @Transactional
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("user is not found with email: " + email));
 
-        return UserDetailsImpl.build(user);
+        return UserDetailsImpl.build(user, adminEmails.contains(user.getEmail()));
+    }
+
+    // called by the authentication provider after a successful login when the stored hash
+    // was made with another BCrypt cost than the configured one
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByEmail(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("user is not found with email: " + userDetails.getUsername()));
+
+        user.setPassword(newPassword);
+        userRepository.save(user);
+        return UserDetailsImpl.build(user, adminEmails.contains(user.getEmail()));
     }
-}
\ No newline at end of file
+}
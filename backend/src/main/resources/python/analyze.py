@@ -1,3 +1,4 @@
+import os
 import sys
 import json
 import traceback
@@ -17,20 +18,39 @@ from ultralytics.utils import LOGGER
 # muting YOLO logs
 LOGGER.setLevel("ERROR")
 
-def load_models():
+def apply_cpu_limits():
+    # the backend runs several analyzers side by side and gives each one its own
+    # share of the cores, see AnalyzerResources
+    intra_op = os.environ.get("ANALYZER_INTRA_OP_THREADS")
+    inter_op = os.environ.get("ANALYZER_INTER_OP_THREADS")
+    affinity = os.environ.get("ANALYZER_CPU_AFFINITY")
+    if intra_op:
+        torch.set_num_threads(int(intra_op))
+    if inter_op:
+        torch.set_num_interop_threads(int(inter_op))
+    if affinity and hasattr(os, "sched_setaffinity"):
+        try:
+            os.sched_setaffinity(0, {int(cpu) for cpu in affinity.split(",")})
+        except OSError:
+            pass
+
+def load_models(detect_only=False):
     try:
         device = 'cuda' if torch.cuda.is_available() else 'cpu'
-        cls_model = resnet50(weights="IMAGENET1K_V1").to(device).eval()
+        # detection-only analyzers (image tiles) never touch the other two models
+        cls_model = None if detect_only else resnet50(weights="IMAGENET1K_V1").to(device).eval()
         det_model = YOLO("yolov5su.pt").to(device)
-        seg_model = deeplabv3_resnet50(weights="DEFAULT").to(device).eval()
+        seg_model = None if detect_only else deeplabv3_resnet50(weights="DEFAULT").to(device).eval()
 
-        try:
-            imagenet_labels = requests.get(
-                "https://raw.githubusercontent.com/pytorch/hub/master/imagenet_classes.txt",
-                timeout=10
-            ).text.splitlines()
-        except requests.exceptions.RequestException:
-            imagenet_labels = []
+        imagenet_labels = []
+        if not detect_only:
+            try:
+                imagenet_labels = requests.get(
+                    "https://raw.githubusercontent.com/pytorch/hub/master/imagenet_classes.txt",
+                    timeout=10
+                ).text.splitlines()
+            except requests.exceptions.RequestException:
+                imagenet_labels = []
 
         segmentation_labels = [
             'background', 'aeroplane', 'bicycle', 'bird', 'boat', 'bottle', 'bus',
@@ -64,7 +84,9 @@ def image_to_base64(img):
     finally:
         buf.close()
 
-def analyze_image(image_path, models):
+def analyze_image(image_path, models, visualize=True, emit=None, classify=True):
+    # emit, when given, receives a record as soon as each stage is done
+    emit = emit or (lambda record: None)
     try:
         # 1. Validate and load image
         try:
@@ -99,18 +121,22 @@ def analyze_image(image_path, models):
             seg_img = img
             seg_width, seg_height = img_width, img_height
 
-        # 3. Classification
-        transform = T.Compose([T.Resize((224, 224)), T.ToTensor()])
-        input_cls = transform(img).unsqueeze(0).to(models["device"])
-        with torch.no_grad():
-            out_cls = models["cls_model"](input_cls)
-        cls_id = out_cls.argmax().item()
-        cls_name = models["imagenet_labels"][cls_id] if cls_id < len(models["imagenet_labels"]) else "unknown"
+        # 3. Classification (skipped for detection-only runs such as image tiles)
+        cls_name = None
+        input_cls = out_cls = None
+        if classify:
+            transform = T.Compose([T.Resize((224, 224)), T.ToTensor()])
+            input_cls = transform(img).unsqueeze(0).to(models["device"])
+            with torch.no_grad():
+                out_cls = models["cls_model"](input_cls)
+            cls_id = out_cls.argmax().item()
+            cls_name = models["imagenet_labels"][cls_id] if cls_id < len(models["imagenet_labels"]) else "unknown"
+            emit({"stage": "classification", "classification": cls_name})
 
         # 4. Detection
         det_results = models["det_model"](img)[0]
-        det_img = img.copy()
-        draw = ImageDraw.Draw(det_img)
+        det_img = img.copy() if visualize else None
+        draw = ImageDraw.Draw(det_img) if visualize else None
         detections = []
         pet_detected = False
 
@@ -127,17 +153,21 @@ def analyze_image(image_path, models):
                     "confidence": round(conf, 4),
                     "bbox": [round(x, 2) for x in [x1, y1, x2, y2]]
                 })
-                draw.rectangle([x1, y1, x2, y2], outline="lime", width=5)
-                draw.text((x1, y1 - 15), f"{label} {conf:.2f}", fill="lime")
+                if draw is not None:
+                    draw.rectangle([x1, y1, x2, y2], outline="lime", width=5)
+                    draw.text((x1, y1 - 15), f"{label} {conf:.2f}", fill="lime")
+
+        emit({"stage": "detections", "detections": detections, "pets_detected": pet_detected})
 
-        # 5. Segmentation (only if pets detected)
+        # 5. Segmentation (only if pets detected and visualizations are wanted)
         segmentation_img_str = ""
         detection_img_str = ""
         input_seg = None  
 
-        if pet_detected:
+        if pet_detected and visualize:
             # generate detection image
             detection_img_str = image_to_base64(det_img)
+            emit({"stage": "detection_image", "detection": detection_img_str})
 
             # generate segmentation
             seg_transform = T.Compose([
@@ -163,6 +193,7 @@ def analyze_image(image_path, models):
                 seg_vis.paste(yellow_layer, (0, 0), Image.fromarray(binary_mask).convert("L"))
 
             segmentation_img_str = image_to_base64(seg_vis)
+            emit({"stage": "segmentation", "segmentation": segmentation_img_str})
 
         to_delete = [input_cls, out_cls]
         if input_seg is not None:
@@ -177,8 +208,8 @@ def analyze_image(image_path, models):
             "classification": cls_name,
             "detections": detections,
             "visualizations": {
-                "detection": detection_img_str if pet_detected else None,
-                "segmentation": segmentation_img_str if pet_detected else None
+                "detection": detection_img_str if pet_detected and visualize else None,
+                "segmentation": segmentation_img_str if pet_detected and visualize else None
             },
             "metadata": {
                 "device": models["device"],
@@ -198,21 +229,56 @@ def analyze_image(image_path, models):
             "traceback": traceback.format_exc()
         }
 
+def run_stream(models, visualize, classify):
+    # one image path per line on stdin, one JSON result per line on stdout,
+    # so the models are loaded once for a whole sequence of frames
+    for line in sys.stdin:
+        image_path = line.strip()
+        if not image_path:
+            continue
+        result = analyze_image(image_path, models, visualize, classify=classify)
+        print(json.dumps(result), flush=True)
+
+def run_progressive(image_path, models, visualize):
+    # one JSON record per finished stage, then a final "done" record without the
+    # images that were already sent
+    def emit(record):
+        print(json.dumps(record), flush=True)
+
+    result = analyze_image(image_path, models, visualize, emit)
+    result.pop("visualizations", None)
+    result["stage"] = "done"
+    emit(result)
+
 if __name__ == "__main__":
     try:
-        models = load_models()
+        options = [arg for arg in sys.argv[1:] if arg.startswith("--")]
+        paths = [arg for arg in sys.argv[1:] if not arg.startswith("--")]
+        classify = "--detect-only" not in options
+        visualize = classify and "--no-visualizations" not in options
+
+        apply_cpu_limits()
+        models = load_models(detect_only=not classify)
         if not models.get("success"):
-            print(json.dumps(models))
+            print(json.dumps(models), flush=True)
             sys.exit(1)
 
-        if len(sys.argv) < 2:
+        if "--stream" in options:
+            run_stream(models, visualize, classify)
+            sys.exit(0)
+
+        if "--progressive" in options and paths:
+            run_progressive(paths[0], models, visualize)
+            sys.exit(0)
+
+        if not paths:
             print(json.dumps({
                 "success": False,
                 "error": "No image path provided"
             }))
             sys.exit(1)
 
-        result = analyze_image(sys.argv[1], models)
+        result = analyze_image(paths[0], models, visualize, classify=classify)
         print(json.dumps(result))
 
     except Exception as e:
@@ -0,0 +1,91 @@
+package com.rana.backend.config;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+// low BCrypt costs keep the hashing fast; the configured cost is 5
+class SecurityConfigTest {
+
+    private final PasswordEncoder encoder = new SecurityConfig(null, null, null, null).passwordEncoder(5);
+
+    @Test
+    void hashWithTheConfiguredCostIsKept() {
+        assertFalse(encoder.upgradeEncoding(encoder.encode("secret123")));
+    }
+
+    @Test
+    void hashWithALowerCostIsUpgraded() {
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret123")));
+    }
+
+    @Test
+    void hashWithAHigherCostIsReEncodedDownToTheConfiguredCost() {
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("secret123")));
+    }
+
+    @Test
+    void unrecognisedHashIsReEncoded() {
+        assertTrue(encoder.upgradeEncoding("plain-text"));
+        assertTrue(encoder.upgradeEncoding(null));
+    }
+
+    @Test
+    void loginReEncodesAHashWithAnotherCost() {
+        String stored = new BCryptPasswordEncoder(6).encode("secret123");
+        AtomicReference<String> rehashed = new AtomicReference<>();
+        UserDetailsService users = mock(UserDetailsService.class);
+        when(users.loadUserByUsername(anyString()))
+                .thenReturn(User.withUsername("alice@example.com").password(stored).authorities(List.of()).build());
+        UserDetailsPasswordService passwords = mock(UserDetailsPasswordService.class);
+        when(passwords.updatePassword(any(), anyString())).thenAnswer(invocation -> {
+            rehashed.set(invocation.getArgument(1));
+            return invocation.getArgument(0);
+        });
+
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(users);
+        provider.setPasswordEncoder(encoder);
+        provider.setUserDetailsPasswordService(passwords);
+        provider.authenticate(new UsernamePasswordAuthenticationToken("alice@example.com", "secret123"));
+
+        assertTrue(rehashed.get().startsWith("$2a$05$"), rehashed.get());
+        assertTrue(encoder.matches("secret123", rehashed.get()));
+    }
+
+    @Test
+    void loginWithTheConfiguredCostDoesNotReEncode() {
+        UserDetails user = User.withUsername("alice@example.com").password(encoder.encode("secret123"))
+                .authorities(List.of()).build();
+        UserDetailsService users = mock(UserDetailsService.class);
+        when(users.loadUserByUsername(anyString())).thenReturn(user);
+        AtomicReference<String> rehashed = new AtomicReference<>();
+        UserDetailsPasswordService passwords = (details, password) -> {
+            rehashed.set(password);
+            return details;
+        };
+
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(users);
+        provider.setPasswordEncoder(encoder);
+        provider.setUserDetailsPasswordService(passwords);
+        provider.authenticate(new UsernamePasswordAuthenticationToken("alice@example.com", "secret123"));
+
+        assertNull(rehashed.get());
+    }
+}
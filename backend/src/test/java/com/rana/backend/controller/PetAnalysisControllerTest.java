@@ -0,0 +1,118 @@
+package com.rana.backend.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.rana.backend.service.AnalysisPriority;
+import com.rana.backend.service.AnalysisScheduler;
+import com.rana.backend.service.ProgressiveAnalysisService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// the stream job is queued on a real scheduler whose only worker is busy, so a client
+// that goes away must take the job out of its queue before it ever runs
+class PetAnalysisControllerTest {
+
+    private final CountDownLatch releaseBlocker = new CountDownLatch(1);
+    private final AtomicBoolean streamJobRan = new AtomicBoolean();
+    private AnalysisScheduler scheduler;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // one queued job per user, so a job left behind would reject the next one
+        scheduler = new AnalysisScheduler(new SimpleMeterRegistry(), null, 1, 1, 1, "", 4);
+        ReflectionTestUtils.invokeMethod(scheduler, "startWorkers");
+        CountDownLatch blockerStarted = new CountDownLatch(1);
+        scheduler.submit("blocker", AnalysisPriority.INTERACTIVE, () -> {
+            blockerStarted.countDown();
+            return releaseBlocker.await(10, TimeUnit.SECONDS);
+        });
+        assertTrue(blockerStarted.await(10, TimeUnit.SECONDS));
+
+        ProgressiveAnalysisService progressiveAnalysisService = mock(ProgressiveAnalysisService.class);
+        when(progressiveAnalysisService.analyze(eq("alice"), any(), any(), anyLong(), any()))
+                .thenAnswer(invocation -> scheduler.submit("alice", AnalysisPriority.INTERACTIVE, () -> {
+                    streamJobRan.set(true);
+                    return null;
+                }));
+
+        PetAnalysisController controller = new PetAnalysisController();
+        ReflectionTestUtils.setField(controller, "progressiveAnalysisService", progressiveAnalysisService);
+        ReflectionTestUtils.setField(controller, "streamTimeoutMs", 60_000L);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseBlocker.countDown();
+        ReflectionTestUtils.invokeMethod(scheduler, "stopWorkers");
+    }
+
+    @Test
+    void streamTimeoutRemovesTheQueuedJob() throws Exception {
+        MvcResult result = startStream();
+
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        assertJobWasDequeued();
+    }
+
+    @Test
+    void streamErrorRemovesTheQueuedJob() throws Exception {
+        MvcResult result = startStream();
+
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onError(new AsyncEvent(asyncContext, new IOException("Broken pipe")));
+        }
+
+        assertJobWasDequeued();
+    }
+
+    private MvcResult startStream() throws Exception {
+        return mockMvc.perform(multipart("/api/pets/analyze/stream")
+                        .file(new MockMultipartFile("image", "pet.png", "image/png", new byte[] { 1, 2, 3 }))
+                        .principal(() -> "alice"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private void assertJobWasDequeued() throws Exception {
+        // the queue slot is free again, otherwise this submit would be rejected
+        CompletableFuture<String> next = scheduler.submit("alice", AnalysisPriority.INTERACTIVE, () -> "next");
+        releaseBlocker.countDown();
+        assertEquals("next", next.get(10, TimeUnit.SECONDS));
+        assertFalse(streamJobRan.get());
+    }
+}
@@ -0,0 +1,102 @@
+package com.rana.backend.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+class RateLimitFilterTest {
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void loginIsLimitedPerClientAddress() throws Exception {
+        RateLimitFilter filter = new RateLimitFilter(limiter("", ""));
+
+        assertEquals(200, login(filter, "198.51.100.1"));
+        assertEquals(200, login(filter, "198.51.100.1"));
+        assertEquals(429, login(filter, "198.51.100.1"));
+        assertEquals(200, login(filter, "198.51.100.2"));
+    }
+
+    @Test
+    void authOverridesMatchTheClientAddress() throws Exception {
+        RateLimitFilter filter = new RateLimitFilter(limiter("", "203.0.113.7=3:3,2001:db8::1=3:3"));
+
+        assertEquals(List.of(200, 200, 200, 429), logins(filter, "203.0.113.7", 4));
+        assertEquals(List.of(200, 200, 200, 429), logins(filter, "2001:db8::1", 4));
+        assertEquals(List.of(200, 200, 429), logins(filter, "198.51.100.1", 3));
+    }
+
+    @Test
+    void loginWithATokenIsStillKeyedByAddress() throws Exception {
+        RateLimitFilter filter = new RateLimitFilter(limiter("", ""));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("alice@example.com", null, List.of()));
+
+        assertEquals(List.of(200, 200, 429), logins(filter, "198.51.100.1", 3));
+    }
+
+    @Test
+    void analysisIsLimitedPerUserWithEmailOverrides() throws Exception {
+        RateLimitFilter filter = new RateLimitFilter(limiter("bob@example.com=3:3", ""));
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("alice@example.com", null, List.of()));
+        assertEquals(200, request(filter, "/api/pets/analyze", "198.51.100.1"));
+        assertEquals(200, request(filter, "/api/pets/analyze", "198.51.100.2"));
+        assertEquals(429, request(filter, "/api/pets/analyze", "198.51.100.3"));
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("bob@example.com", null, List.of()));
+        assertEquals(200, request(filter, "/api/pets/analyze", "198.51.100.1"));
+        assertEquals(200, request(filter, "/api/pets/analyze", "198.51.100.1"));
+        assertEquals(200, request(filter, "/api/pets/analyze", "198.51.100.1"));
+        assertEquals(429, request(filter, "/api/pets/analyze", "198.51.100.1"));
+    }
+
+    @Test
+    void verifyIsNotLimited() throws Exception {
+        RateLimitFilter filter = new RateLimitFilter(limiter("", ""));
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, request(filter, "/api/auth/verify", "198.51.100.1"));
+        }
+    }
+
+    // two requests per bucket unless overridden
+    private static RateLimiter limiter(String analyzeOverrides, String authOverrides) {
+        return new RateLimiter(2, 1, analyzeOverrides, 2, 1, authOverrides, 10);
+    }
+
+    private static List<Integer> logins(RateLimitFilter filter, String address, int count) throws Exception {
+        Integer[] statuses = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            statuses[i] = login(filter, address);
+        }
+        return List.of(statuses);
+    }
+
+    private static int login(RateLimitFilter filter, String address) throws Exception {
+        return request(filter, "/api/auth/login", address);
+    }
+
+    private static int request(RateLimitFilter filter, String path, String address) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        request.setRemoteAddr(address);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,95 @@
+package com.rana.backend.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void allowsBurstUpToCapacityThenRejects() {
+        TokenBucket bucket = new TokenBucket(3, 1, 1, TimeUnit.SECONDS, 0);
+
+        for (int i = 2; i >= 0; i--) {
+            TokenBucket.Probe probe = bucket.tryConsume(0);
+            assertTrue(probe.consumed());
+            assertEquals(i, probe.remaining());
+        }
+
+        TokenBucket.Probe rejected = bucket.tryConsume(0);
+        assertFalse(rejected.consumed());
+        assertEquals(3, rejected.limit());
+        assertEquals(SECOND, rejected.nanosToNextToken());
+        assertEquals(3 * SECOND, rejected.nanosToFull());
+    }
+
+    @Test
+    void refillsOverTimeWithoutExceedingCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 1, 1, TimeUnit.SECONDS, 0);
+        bucket.tryConsume(0);
+        bucket.tryConsume(0);
+        assertFalse(bucket.tryConsume(SECOND / 2).consumed());
+
+        assertTrue(bucket.tryConsume(SECOND).consumed());
+
+        // a long idle period refills to capacity, not beyond
+        assertEquals(1, bucket.tryConsume(100 * SECOND).remaining());
+        assertEquals(0, bucket.tryConsume(100 * SECOND).remaining());
+        assertFalse(bucket.tryConsume(100 * SECOND).consumed());
+    }
+
+    @Test
+    void clockGoingBackwardsDoesNotRefill() {
+        TokenBucket bucket = new TokenBucket(1, 1, 1, TimeUnit.SECONDS, 10 * SECOND);
+        assertTrue(bucket.tryConsume(10 * SECOND).consumed());
+
+        assertFalse(bucket.tryConsume(5 * SECOND).consumed());
+        assertFalse(bucket.tryConsume(10 * SECOND).consumed());
+        assertTrue(bucket.tryConsume(11 * SECOND).consumed());
+    }
+
+    @Test
+    void concurrentRequestsNeverTakeMoreThanCapacity() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100, 1, 1, TimeUnit.HOURS, 0);
+        AtomicInteger consumed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (bucket.tryConsume(0).consumed()) {
+                        consumed.incrementAndGet();
+                    }
+                });
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        assertEquals(100, consumed.get());
+    }
+
+    @Test
+    void rejectsNonPositiveRates() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1, 1, TimeUnit.SECONDS, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0, 1, TimeUnit.SECONDS, 0));
+    }
+}
@@ -0,0 +1,118 @@
+package com.rana.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// a single worker is held busy by a blocking job while the queues are filled, so
+// the dispatch order afterwards is decided by the deficit round robin alone
+class AnalysisSchedulerTest {
+
+    private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch blockerStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseBlocker = new CountDownLatch(1);
+    private AnalysisScheduler scheduler;
+
+    @AfterEach
+    void stop() {
+        releaseBlocker.countDown();
+        scheduler.stopWorkers();
+    }
+
+    @Test
+    void usersTakeTurnsWithinAPriorityClass() throws Exception {
+        start(1, "", 10);
+        List<CompletableFuture<String>> jobs = new ArrayList<>();
+        jobs.add(record("album", AnalysisPriority.INTERACTIVE, 1, "album-1"));
+        jobs.add(record("album", AnalysisPriority.INTERACTIVE, 1, "album-2"));
+        jobs.add(record("album", AnalysisPriority.INTERACTIVE, 1, "album-3"));
+        jobs.add(record("alice", AnalysisPriority.INTERACTIVE, 1, "alice-1"));
+        jobs.add(record("bob", AnalysisPriority.INTERACTIVE, 1, "bob-1"));
+
+        assertEquals(List.of("album-1", "alice-1", "bob-1", "album-2", "album-3"), runAll(jobs));
+    }
+
+    @Test
+    void weightedUserGetsMoreTurns() throws Exception {
+        start(1, "heavy=2", 10);
+        List<CompletableFuture<String>> jobs = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            jobs.add(record("heavy", AnalysisPriority.INTERACTIVE, 1, "heavy-" + i));
+        }
+        jobs.add(record("light", AnalysisPriority.INTERACTIVE, 1, "light-1"));
+        jobs.add(record("light", AnalysisPriority.INTERACTIVE, 1, "light-2"));
+
+        assertEquals(List.of("heavy-1", "heavy-2", "light-1", "heavy-3", "heavy-4", "light-2"), runAll(jobs));
+    }
+
+    @Test
+    void expensiveJobWaitsUntilItsDeficitCoversTheCost() throws Exception {
+        start(1, "", 10);
+        List<CompletableFuture<String>> jobs = new ArrayList<>();
+        jobs.add(record("album", AnalysisPriority.INTERACTIVE, 4, "animation"));
+        jobs.add(record("alice", AnalysisPriority.INTERACTIVE, 1, "alice-1"));
+        jobs.add(record("alice", AnalysisPriority.INTERACTIVE, 1, "alice-2"));
+
+        assertEquals(List.of("alice-1", "alice-2", "animation"), runAll(jobs));
+    }
+
+    @Test
+    void interactiveClassIsServedBeforeBulk() throws Exception {
+        start(1, "", 10);
+        List<CompletableFuture<String>> jobs = new ArrayList<>();
+        jobs.add(record("album", AnalysisPriority.BULK, 1, "bulk-1"));
+        jobs.add(record("album", AnalysisPriority.BULK, 1, "bulk-2"));
+        jobs.add(record("alice", AnalysisPriority.INTERACTIVE, 1, "interactive-1"));
+
+        assertEquals(List.of("interactive-1", "bulk-1", "bulk-2"), runAll(jobs));
+    }
+
+    @Test
+    void cancelledJobIsDroppedAndFreesItsQueueSlot() throws Exception {
+        start(1, "", 1);
+        CompletableFuture<String> cancelled = record("alice", AnalysisPriority.INTERACTIVE, 1, "cancelled");
+        assertThrows(RejectedExecutionException.class,
+                () -> record("alice", AnalysisPriority.INTERACTIVE, 1, "over-limit"));
+
+        assertTrue(cancelled.cancel(true));
+        CompletableFuture<String> next = record("alice", AnalysisPriority.INTERACTIVE, 1, "next");
+
+        assertEquals(List.of("next"), runAll(List.of(next)));
+    }
+
+    private void start(int workers, String weights, int maxQueuedPerUser) throws InterruptedException {
+        scheduler = new AnalysisScheduler(new SimpleMeterRegistry(), null, workers, 1, maxQueuedPerUser, weights, 4);
+        scheduler.startWorkers();
+        scheduler.submit("blocker", AnalysisPriority.INTERACTIVE, () -> {
+            blockerStarted.countDown();
+            return releaseBlocker.await(10, TimeUnit.SECONDS);
+        });
+        assertTrue(blockerStarted.await(10, TimeUnit.SECONDS));
+    }
+
+    private CompletableFuture<String> record(String user, AnalysisPriority priority, int cost, String name) {
+        return scheduler.submit(user, priority, cost, () -> {
+            order.add(name);
+            return name;
+        });
+    }
+
+    private List<String> runAll(List<CompletableFuture<String>> jobs) throws Exception {
+        releaseBlocker.countDown();
+        CompletableFuture.allOf(jobs.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        return List.copyOf(order);
+    }
+}
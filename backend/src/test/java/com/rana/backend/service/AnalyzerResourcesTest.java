@@ -0,0 +1,118 @@
+package com.rana.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class AnalyzerResourcesTest {
+
+    @Test
+    void unevenCpuGroupsGetOneThreadPerPinnedCpu() {
+        AnalyzerResources resources = resources(cpuset(6), 6, true);
+
+        List<AnalyzerResources.Slot> plan = resources.plan(4);
+
+        assertEquals(List.of(List.of(0), List.of(1, 2), List.of(3), List.of(4, 5)),
+                plan.stream().map(AnalyzerResources.Slot::cpus).toList());
+        assertEquals(List.of(1, 2, 1, 2), plan.stream().map(AnalyzerResources.Slot::intraOpThreads).toList());
+    }
+
+    @Test
+    void everyPinnedCpuRunsAThread() {
+        AnalyzerResources resources = resources(cpuset(5), 5, true);
+
+        List<AnalyzerResources.Slot> plan = resources.plan(2);
+
+        assertEquals(List.of(List.of(0, 1), List.of(2, 3, 4)),
+                plan.stream().map(AnalyzerResources.Slot::cpus).toList());
+        assertEquals(5, plan.stream().mapToInt(AnalyzerResources.Slot::intraOpThreads).sum());
+    }
+
+    @Test
+    void pinsTheActualCpusetMembers() {
+        AnalyzerResources resources = resources(List.of(2, 3, 8, 9), 4, true);
+
+        List<AnalyzerResources.Slot> plan = resources.plan(2);
+
+        assertEquals(List.of(List.of(2, 3), List.of(8, 9)), plan.stream().map(AnalyzerResources.Slot::cpus).toList());
+    }
+
+    @Test
+    void cpuQuotaSetsThreadCountsButDoesNotPin() {
+        // 8 visible CPUs but only 3 cores worth of CPU time
+        AnalyzerResources resources = resources(cpuset(8), 3, true);
+
+        List<AnalyzerResources.Slot> plan = resources.plan(2);
+
+        assertTrue(plan.stream().allMatch(slot -> slot.cpus().isEmpty()));
+        assertEquals(List.of(1, 2), plan.stream().map(AnalyzerResources.Slot::intraOpThreads).toList());
+    }
+
+    @Test
+    void moreAnalyzersThanCoresGetOneThreadEachAndNoPinning() {
+        AnalyzerResources resources = resources(cpuset(2), 2, true);
+
+        List<AnalyzerResources.Slot> plan = resources.plan(3);
+
+        assertEquals(3, plan.size());
+        assertTrue(plan.stream().allMatch(slot -> slot.cpus().isEmpty() && slot.intraOpThreads() == 1));
+    }
+
+    @Test
+    void concurrencyIsLimitedByCoresAndMemory() {
+        long gigabyte = 1024L * 1024 * 1024;
+        assertEquals(4, new AnalyzerResources(new AnalyzerResources.Host(cpuset(8), 8, -1), 0, 2, 1, 1024, true)
+                .getConcurrency());
+        assertEquals(3, new AnalyzerResources(new AnalyzerResources.Host(cpuset(8), 8, 3 * gigabyte), 0, 2, 1, 1024, true)
+                .getConcurrency());
+        assertEquals(1, new AnalyzerResources(new AnalyzerResources.Host(cpuset(8), 8, 0), 0, 2, 1, 1024, true)
+                .getConcurrency());
+    }
+
+    @Test
+    void parsesKernelCpuLists() {
+        assertEquals(List.of(0, 1, 2, 3), AnalyzerResources.parseCpuList("0-3"));
+        assertEquals(List.of(0, 2, 3, 4, 7), AnalyzerResources.parseCpuList(" 0,2-4,7\n"));
+        assertEquals(List.of(5), AnalyzerResources.parseCpuList("5"));
+    }
+
+    @Test
+    void parsesCgroupCpuQuotas() {
+        assertEquals(2, AnalyzerResources.parseCpuMax("200000 100000"));
+        assertEquals(2, AnalyzerResources.parseCpuMax("150000 100000"));
+        assertEquals(-1, AnalyzerResources.parseCpuMax("max 100000"));
+        assertEquals(4, AnalyzerResources.parseCfsQuota("400000", "100000"));
+        assertEquals(-1, AnalyzerResources.parseCfsQuota("-1", "100000"));
+        assertEquals(-1, AnalyzerResources.parseCfsQuota(null, null));
+    }
+
+    @Test
+    void effectiveCoresAreCappedByTheQuota() {
+        assertEquals(8, AnalyzerResources.effectiveCores(8, 8, -1));
+        assertEquals(2, AnalyzerResources.effectiveCores(8, 8, 2));
+        assertEquals(4, AnalyzerResources.effectiveCores(8, 4, -1));
+        assertEquals(1, AnalyzerResources.effectiveCores(0, 8, -1));
+    }
+
+    @Test
+    void parsesCgroupMemoryLimits() {
+        assertEquals(2147483648L, AnalyzerResources.parseMemoryLimit("2147483648"));
+        assertEquals(-1, AnalyzerResources.parseMemoryLimit("max"));
+        // cgroup v1 without a limit
+        assertEquals(-1, AnalyzerResources.parseMemoryLimit("9223372036854771712"));
+        assertEquals(-1, AnalyzerResources.parseMemoryLimit(null));
+        assertEquals(-1, AnalyzerResources.parseMemoryLimit("garbage"));
+    }
+
+    private static AnalyzerResources resources(List<Integer> cpus, int cores, boolean pinCpus) {
+        return new AnalyzerResources(new AnalyzerResources.Host(cpus, cores, -1), 1, 1, 1, 1500, pinCpus);
+    }
+
+    private static List<Integer> cpuset(int count) {
+        return IntStream.range(0, count).boxed().toList();
+    }
+}
@@ -0,0 +1,114 @@
+package com.rana.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+// the decoder and the analyzer session are replaced by fakes: the decoder writes a file
+// per frame and hands it to the sink, the session answers after a short delay
+class AnimationAnalysisServiceTest {
+
+    private static final String NO_PET = "{\"success\":true,\"detections\":[],\"metadata\":{\"pets_detected\":false}}";
+    private static final String PET = "{\"success\":true,\"detections\":[{\"class\":\"dog\",\"confidence\":0.9,"
+            + "\"bbox\":[0,0,10,10]}],\"metadata\":{\"pets_detected\":true}}";
+
+    private final FrameDecoder frameDecoder = mock(FrameDecoder.class);
+    private final AnalyzerSession session = mock(AnalyzerSession.class);
+    private final AtomicInteger decodedFrames = new AtomicInteger();
+    private final AtomicInteger maxFramesOnDisk = new AtomicInteger();
+    private AnimationAnalysisService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        PythonService pythonService = mock(PythonService.class);
+        when(pythonService.openSession(anyString())).thenReturn(session);
+        service = new AnimationAnalysisService(pythonService, frameDecoder);
+        ReflectionTestUtils.setField(service, "defaultFps", 2.0);
+        ReflectionTestUtils.setField(service, "maxFps", 10.0);
+        ReflectionTestUtils.setField(service, "maxFrames", 60);
+        ReflectionTestUtils.setField(service, "confirmFrames", 3);
+        ReflectionTestUtils.setField(service, "trackMinIou", 0.3);
+        ReflectionTestUtils.setField(service, "decodeAhead", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void decoderNeverRunsFarAheadOfTheAnalyzer() throws Exception {
+        fakeDecoder(40);
+        when(session.nextResult()).thenAnswer(invocation -> {
+            Thread.sleep(5);
+            return NO_PET;
+        });
+
+        Map<String, Object> result = analyze();
+
+        assertEquals(40, ((Map<?, ?>) result.get("summary")).get("frames_analyzed"));
+        // two submitted frames plus the one waiting for a permit
+        assertTrue(maxFramesOnDisk.get() <= 3, "frames on disk: " + maxFramesOnDisk.get());
+    }
+
+    @Test
+    void earlyStopLeavesTheRestOfTheAnimationUndecoded() throws Exception {
+        fakeDecoder(60);
+        when(session.nextResult()).thenReturn(PET);
+
+        Map<String, Object> result = analyze();
+
+        assertEquals(true, ((Map<?, ?>) result.get("summary")).get("pet_confirmed"));
+        assertTrue(decodedFrames.get() <= 3 + 3, "decoded frames: " + decodedFrames.get());
+    }
+
+    @Test
+    void oversizedMediaIsNotWrappedInAnIOException() throws Exception {
+        when(frameDecoder.decode(any(), any(), anyDouble(), anyInt(), any(), any(), any()))
+                .thenThrow(new MediaTooLargeException("Video frames exceed the limit of 4000000 pixels"));
+
+        assertThrows(MediaTooLargeException.class, this::analyze);
+    }
+
+    private void fakeDecoder(int frames) throws Exception {
+        when(frameDecoder.decode(any(), any(), anyDouble(), anyInt(), any(), any(), any())).thenAnswer(invocation -> {
+            Path workDir = invocation.getArgument(4);
+            FrameDecoder.FrameSink sink = invocation.getArgument(5);
+            BooleanSupplier stopRequested = invocation.getArgument(6);
+            int emitted = 0;
+            while (emitted < frames && !stopRequested.getAsBoolean()) {
+                Path frame = Files.write(workDir.resolve("frame-" + emitted + ".bmp"), new byte[] { 1 });
+                decodedFrames.incrementAndGet();
+                try (Stream<Path> files = Files.list(workDir)) {
+                    maxFramesOnDisk.accumulateAndGet((int) files.count(), Math::max);
+                }
+                sink.accept(emitted, emitted * 500L, frame);
+                emitted++;
+            }
+            return emitted;
+        });
+    }
+
+    private Map<String, Object> analyze() throws Exception {
+        return service.analyze(new MockMultipartFile("media", "pet.gif", "image/gif", new byte[] { 1 }), null);
+    }
+}
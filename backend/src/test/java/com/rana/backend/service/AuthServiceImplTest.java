@@ -0,0 +1,111 @@
+package com.rana.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.ConstraintViolationException.ConstraintKind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+
+import com.rana.backend.controller.AuthController;
+import com.rana.backend.dto.request.RegisterRequest;
+import com.rana.backend.dto.response.MessageResponse;
+import com.rana.backend.model.User;
+import com.rana.backend.repo.UserRepo;
+import com.rana.backend.security.JwtUtils;
+
+// registration through the controller, so the status code of each kind of violation is checked
+class AuthServiceImplTest {
+
+    private static final RegisterRequest REQUEST = new RegisterRequest("alice@example.com", "secret123");
+
+    private final UserRepo userRepository = mock(UserRepo.class);
+    private final JwtUtils jwtUtils = mock(JwtUtils.class);
+    private final ThreadPoolExecutor executor =
+            new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    private final AuthController controller = new AuthController(
+            new AuthServiceImpl(userRepository, NoOpPasswordEncoder.getInstance(), mock(AuthenticationManager.class),
+                    jwtUtils, executor),
+            jwtUtils);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void registersNewUser() throws Exception {
+        when(jwtUtils.generateJwtToken(anyString())).thenReturn("token");
+
+        ResponseEntity<?> response = controller.registerUser(REQUEST).get();
+
+        assertEquals(200, response.getStatusCode().value());
+    }
+
+    @Test
+    void duplicateEmailIsABadRequest() throws Exception {
+        when(userRepository.saveAndFlush(any())).thenThrow(violation(ConstraintKind.UNIQUE, "UK6dotkott2kjsp8vw4d0m25fb7"));
+        when(userRepository.findByEmail("alice@example.com")).thenReturn(Optional.of(new User()));
+
+        ResponseEntity<?> response = controller.registerUser(REQUEST).get();
+
+        assertEquals(400, response.getStatusCode().value());
+        assertEquals("Email is already taken", ((MessageResponse) response.getBody()).message());
+    }
+
+    @Test
+    void otherUniqueViolationIsRethrown() {
+        // a unique key on some other column: no user with this email exists
+        DataIntegrityViolationException violation = violation(ConstraintKind.UNIQUE, "uk_users_other");
+        when(userRepository.saveAndFlush(any())).thenThrow(violation);
+        when(userRepository.findByEmail("alice@example.com")).thenReturn(Optional.empty());
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> controller.registerUser(REQUEST).get());
+
+        assertSame(violation, error.getCause());
+    }
+
+    @Test
+    void nonUniqueViolationIsRethrown() {
+        DataIntegrityViolationException violation = violation(ConstraintKind.OTHER, "fk_users_role");
+        when(userRepository.saveAndFlush(any())).thenThrow(violation);
+        when(userRepository.findByEmail("alice@example.com")).thenReturn(Optional.of(new User()));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> controller.registerUser(REQUEST).get());
+
+        assertSame(violation, error.getCause());
+    }
+
+    @Test
+    void violationWithoutHibernateCauseIsRethrown() {
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("value too long");
+        when(userRepository.saveAndFlush(any())).thenThrow(violation);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> controller.registerUser(REQUEST).get());
+
+        assertSame(violation, error.getCause());
+    }
+
+    private static DataIntegrityViolationException violation(ConstraintKind kind, String constraintName) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("could not execute statement",
+                        new SQLException("constraint violated", "23000"), kind, constraintName));
+    }
+}
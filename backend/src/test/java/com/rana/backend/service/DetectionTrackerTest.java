@@ -0,0 +1,99 @@
+package com.rana.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+class DetectionTrackerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void overlappingBoxesOfConsecutiveFramesFormOneTrack() {
+        DetectionTracker tracker = new DetectionTracker(0.3, 1);
+        tracker.update(0, detections(box("dog", 0.6, 0, 0, 100, 100)));
+        tracker.update(1, detections(box("dog", 0.9, 10, 0, 110, 100)));
+        tracker.update(2, detections(box("dog", 0.7, 20, 0, 120, 100)));
+
+        List<Map<String, Object>> tracks = tracker.summary();
+        assertEquals(1, tracks.size());
+        Map<String, Object> track = tracks.get(0);
+        assertEquals("dog", track.get("class"));
+        assertEquals(0, track.get("first_frame"));
+        assertEquals(2, track.get("last_frame"));
+        assertEquals(3, track.get("frames"));
+        assertEquals(0.9, track.get("max_confidence"));
+        assertArrayEquals(new double[] { 20, 0, 120, 100 }, (double[]) track.get("last_bbox"));
+    }
+
+    @Test
+    void differentClassOrDistantBoxStartsANewTrack() {
+        DetectionTracker tracker = new DetectionTracker(0.3, 1);
+        tracker.update(0, detections(box("dog", 0.8, 0, 0, 100, 100)));
+        tracker.update(1, detections(
+                box("cat", 0.8, 0, 0, 100, 100),
+                box("dog", 0.8, 500, 500, 600, 600)));
+
+        List<Map<String, Object>> tracks = tracker.summary();
+        assertEquals(3, tracks.size());
+        assertEquals(List.of(1, 1, 1), tracks.stream().map(t -> t.get("frames")).toList());
+    }
+
+    @Test
+    void twoDetectionsInOneFrameCannotClaimTheSameTrack() {
+        DetectionTracker tracker = new DetectionTracker(0.3, 1);
+        tracker.update(0, detections(box("dog", 0.8, 0, 0, 100, 100)));
+        tracker.update(1, detections(
+                box("dog", 0.8, 0, 0, 100, 100),
+                box("dog", 0.7, 5, 5, 105, 105)));
+
+        List<Map<String, Object>> tracks = tracker.summary();
+        assertEquals(2, tracks.size());
+        assertEquals(2, tracks.get(0).get("frames"));
+        assertEquals(1, tracks.get(1).get("frames"));
+    }
+
+    @Test
+    void trackSurvivesGapsUpToMaxGapFrames() {
+        DetectionTracker tracker = new DetectionTracker(0.3, 1);
+        tracker.update(0, detections(box("dog", 0.8, 0, 0, 100, 100)));
+        tracker.update(2, detections(box("dog", 0.8, 0, 0, 100, 100)));
+        tracker.update(5, detections(box("dog", 0.8, 0, 0, 100, 100)));
+
+        List<Map<String, Object>> tracks = tracker.summary();
+        assertEquals(2, tracks.size());
+        assertEquals(2, tracks.get(0).get("last_frame"));
+        assertEquals(5, tracks.get(1).get("first_frame"));
+    }
+
+    @Test
+    void iouOfBoxes() {
+        assertEquals(1.0, DetectionTracker.iou(new double[] { 0, 0, 10, 10 }, new double[] { 0, 0, 10, 10 }));
+        assertEquals(0.0, DetectionTracker.iou(new double[] { 0, 0, 10, 10 }, new double[] { 10, 0, 20, 10 }));
+        assertEquals(25.0 / 175.0, DetectionTracker.iou(new double[] { 0, 0, 10, 10 }, new double[] { 5, 5, 15, 15 }),
+                1e-9);
+    }
+
+    private JsonNode box(String label, double confidence, double x1, double y1, double x2, double y2) {
+        return objectMapper.valueToTree(Map.of(
+                "class", label,
+                "confidence", confidence,
+                "bbox", List.of(x1, y1, x2, y2)));
+    }
+
+    private ArrayNode detections(JsonNode... boxes) {
+        ArrayNode array = objectMapper.createArrayNode();
+        for (JsonNode box : boxes) {
+            array.add(box);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,56 @@
+package com.rana.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class FrameDecoderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void videoFramesAreScaledIntoTheCanvasLimit() {
+        FrameDecoder decoder = decoder(4_000_000);
+
+        assertEquals("fps=2.0,scale=w='min(iw,2000)':h='min(ih,2000)':force_original_aspect_ratio=decrease",
+                decoder.videoFilter(2.0));
+    }
+
+    @Test
+    void gifWithinTheLimitsIsEstimatedFromItsMetadata() throws IOException {
+        Path gif = gif(20, 20);
+
+        assertEquals(1, decoder(400).estimateFrames(gif, "image/gif", 2.0, 60));
+    }
+
+    @Test
+    void gifOverTheCanvasLimitIsRejected() throws IOException {
+        Path gif = gif(20, 20);
+
+        assertThrows(MediaTooLargeException.class, () -> decoder(399).estimateFrames(gif, "image/gif", 2.0, 60));
+    }
+
+    private Path gif(int width, int height) throws IOException {
+        Path gif = Files.createTempFile(tempDir, "pet-", ".gif");
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED), "gif", gif.toFile());
+        return gif;
+    }
+
+    private static FrameDecoder decoder(long maxCanvasPixels) {
+        FrameDecoder decoder = new FrameDecoder();
+        ReflectionTestUtils.setField(decoder, "maxCanvasPixels", maxCanvasPixels);
+        ReflectionTestUtils.setField(decoder, "maxDecodedFrames", 1000);
+        return decoder;
+    }
+}
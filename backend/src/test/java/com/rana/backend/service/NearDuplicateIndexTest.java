@@ -0,0 +1,110 @@
+package com.rana.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// with max distance 4 the 64 bit hash is cut into 5 chunks starting at bits 0, 12, 25, 38 and 51
+class NearDuplicateIndexTest {
+
+    private static final long HASH = 0x0123_4567_89AB_CDEFL;
+
+    @Test
+    void findsHashWithOneFlippedBitInEveryChunkButOne() {
+        NearDuplicateIndex index = index(4, 100, false);
+        index.put("alice", new PerceptualHash.Fingerprint(HASH, 640, 480), "{\"id\":1}");
+
+        // the last bit of chunks 0 to 3; only chunk 4 still matches exactly
+        long query = flip(HASH, 11, 24, 37, 50);
+        NearDuplicateIndex.Match match = index.find("alice", query);
+
+        assertNotNull(match);
+        assertEquals(4, match.distance());
+        assertEquals("{\"id\":1}", match.resultJson());
+        assertEquals(640, match.width());
+        assertEquals(480, match.height());
+    }
+
+    @Test
+    void findsHashDifferingOnlyInTheTopBits() {
+        NearDuplicateIndex index = index(4, 100, false);
+        index.put("alice", new PerceptualHash.Fingerprint(HASH, 1, 1), "{}");
+
+        NearDuplicateIndex.Match match = index.find("alice", flip(HASH, 60, 61, 62, 63));
+
+        assertNotNull(match);
+        assertEquals(4, match.distance());
+    }
+
+    @Test
+    void ignoresHashBeyondMaxDistance() {
+        NearDuplicateIndex index = index(4, 100, false);
+        index.put("alice", new PerceptualHash.Fingerprint(HASH, 1, 1), "{}");
+
+        assertNull(index.find("alice", flip(HASH, 0, 12, 25, 38, 51)));
+        assertNull(index.find("alice", ~HASH));
+    }
+
+    @Test
+    void returnsTheClosestOfSeveralCandidates() {
+        NearDuplicateIndex index = index(4, 100, false);
+        index.put("alice", new PerceptualHash.Fingerprint(flip(HASH, 1, 2, 3), 1, 1), "{\"id\":\"far\"}");
+        index.put("alice", new PerceptualHash.Fingerprint(flip(HASH, 1), 1, 1), "{\"id\":\"near\"}");
+
+        NearDuplicateIndex.Match match = index.find("alice", HASH);
+
+        assertEquals("{\"id\":\"near\"}", match.resultJson());
+        assertEquals(1, match.distance());
+    }
+
+    @Test
+    void resultsAreNotSharedAcrossUsersUnlessEnabled() {
+        NearDuplicateIndex isolated = index(4, 100, false);
+        isolated.put("alice", new PerceptualHash.Fingerprint(HASH, 1, 1), "{}");
+        assertNull(isolated.find("bob", HASH));
+
+        NearDuplicateIndex shared = index(4, 100, true);
+        shared.put("alice", new PerceptualHash.Fingerprint(HASH, 1, 1), "{}");
+        assertNotNull(shared.find("bob", HASH));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntry() {
+        NearDuplicateIndex index = index(0, 2, false);
+        index.put("alice", new PerceptualHash.Fingerprint(1L, 1, 1), "{\"id\":1}");
+        index.put("alice", new PerceptualHash.Fingerprint(2L, 1, 1), "{\"id\":2}");
+
+        // touching the first entry makes the second one the eldest
+        assertNotNull(index.find("alice", 1L));
+        index.put("alice", new PerceptualHash.Fingerprint(3L, 1, 1), "{\"id\":3}");
+
+        assertEquals(2, index.size());
+        assertNotNull(index.find("alice", 1L));
+        assertNull(index.find("alice", 2L));
+        assertNotNull(index.find("alice", 3L));
+    }
+
+    @Test
+    void exactMatchOnlyWithMaxDistanceZero() {
+        NearDuplicateIndex index = index(0, 100, false);
+        index.put("alice", new PerceptualHash.Fingerprint(HASH, 1, 1), "{}");
+
+        assertNotNull(index.find("alice", HASH));
+        assertNull(index.find("alice", flip(HASH, 63)));
+    }
+
+    private static NearDuplicateIndex index(int maxDistance, int maxEntries, boolean shareAcrossUsers) {
+        return new NearDuplicateIndex(new SimpleMeterRegistry(), maxDistance, maxEntries, 64, shareAcrossUsers);
+    }
+
+    private static long flip(long hash, int... bits) {
+        for (int bit : bits) {
+            hash ^= 1L << bit;
+        }
+        return hash;
+    }
+}
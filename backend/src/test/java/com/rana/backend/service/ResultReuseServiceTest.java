@@ -0,0 +1,90 @@
+package com.rana.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ResultReuseServiceTest {
+
+    private static final long HASH = 0x0F0F_F0F0_1234_5678L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ResultReuseService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ResultReuseService(new NearDuplicateIndex(new SimpleMeterRegistry(), 4, 100, 64, false));
+        ReflectionTestUtils.setField(service, "enabled", true);
+    }
+
+    @Test
+    void resizedDuplicateGetsScaledBoxesAndVisualizations() throws IOException {
+        service.remember("alice", new PerceptualHash.Fingerprint(HASH, 100, 80), result(png(100, 80), png(100, 80)));
+
+        JsonNode reused = objectMapper.readTree(service.findReusable("alice",
+                new PerceptualHash.Fingerprint(HASH, 200, 160)));
+
+        assertEquals("[20.0,10.0,60.0,50.0]", reused.path("detections").path(0).path("bbox").toString());
+        assertSize(reused.path("visualizations").path("detection").asText(), 200, 160);
+        assertSize(reused.path("visualizations").path("segmentation").asText(), 200, 160);
+        assertEquals(200, reused.path("metadata").path("image_width").asInt());
+        assertTrue(reused.path("metadata").path("reused").asBoolean());
+    }
+
+    @Test
+    void sameSizedDuplicateKeepsTheStoredVisualizations() throws IOException {
+        String detection = png(100, 80);
+        service.remember("alice", new PerceptualHash.Fingerprint(HASH, 100, 80), result(detection, ""));
+
+        JsonNode reused = objectMapper.readTree(service.findReusable("alice",
+                new PerceptualHash.Fingerprint(HASH, 100, 80)));
+
+        assertEquals(detection, reused.path("visualizations").path("detection").asText());
+        assertEquals("", reused.path("visualizations").path("segmentation").asText());
+    }
+
+    @Test
+    void unreadableStoredVisualizationIsAMiss() throws IOException {
+        service.remember("alice", new PerceptualHash.Fingerprint(HASH, 100, 80), result("not an image", ""));
+
+        assertNull(service.findReusable("alice", new PerceptualHash.Fingerprint(HASH, 200, 160)));
+    }
+
+    private String result(String detection, String segmentation) throws IOException {
+        return objectMapper.writeValueAsString(objectMapper.readTree("""
+                {"success": true,
+                 "detections": [{"class": "dog", "confidence": 0.9, "bbox": [10, 5, 30, 25]}],
+                 "visualizations": {"detection": "%s", "segmentation": "%s"},
+                 "metadata": {"image_width": 100, "image_height": 80}}
+                """.formatted(detection, segmentation)));
+    }
+
+    private static String png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    private static void assertSize(String base64Png, int width, int height) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(Base64.getDecoder().decode(base64Png)));
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+    }
+}
@@ -0,0 +1,68 @@
+package com.rana.backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.rana.backend.service.TiledDetectionService.Detection;
+
+class TiledDetectionServiceTest {
+
+    private static final double IOU = 0.5;
+    private static final double CONTAINMENT = 0.8;
+
+    @Test
+    void keepsTheStrongestOfOverlappingBoxes() {
+        Detection weak = detection("dog", 0.6, 0, 0, 100, 100);
+        Detection strong = detection("dog", 0.9, 5, 5, 105, 105);
+
+        List<Detection> kept = TiledDetectionService.nonMaximumSuppression(List.of(weak, strong), IOU, CONTAINMENT);
+
+        assertEquals(List.of(strong), kept);
+    }
+
+    @Test
+    void dropsPartOfAPetCutByATileEdge() {
+        // the whole dog from one tile and its left half from the neighbouring tile
+        Detection whole = detection("dog", 0.9, 900, 100, 1100, 300);
+        Detection half = detection("dog", 0.7, 900, 100, 1000, 300);
+
+        List<Detection> kept = TiledDetectionService.nonMaximumSuppression(List.of(half, whole), IOU, CONTAINMENT);
+
+        assertEquals(List.of(whole), kept);
+    }
+
+    @Test
+    void keepsBoxesOfDifferentClassesAndSeparatePets() {
+        Detection dog = detection("dog", 0.9, 0, 0, 100, 100);
+        Detection cat = detection("cat", 0.8, 0, 0, 100, 100);
+        Detection otherDog = detection("dog", 0.7, 300, 300, 400, 400);
+
+        List<Detection> kept = TiledDetectionService.nonMaximumSuppression(List.of(otherDog, cat, dog), IOU,
+                CONTAINMENT);
+
+        assertEquals(List.of(dog, cat, otherDog), kept);
+    }
+
+    @Test
+    void keepsSlightlyOverlappingNeighbours() {
+        Detection left = detection("dog", 0.9, 0, 0, 100, 100);
+        Detection right = detection("dog", 0.8, 80, 0, 180, 100);
+
+        List<Detection> kept = TiledDetectionService.nonMaximumSuppression(List.of(left, right), IOU, CONTAINMENT);
+
+        assertEquals(2, kept.size());
+    }
+
+    @Test
+    void emptyInputGivesEmptyResult() {
+        assertTrue(TiledDetectionService.nonMaximumSuppression(List.of(), IOU, CONTAINMENT).isEmpty());
+    }
+
+    private static Detection detection(String label, double confidence, double x1, double y1, double x2, double y2) {
+        return new Detection(label, confidence, new double[] { x1, y1, x2, y2 });
+    }
+}